@@ -0,0 +1,311 @@
+package cat.proven.petAlert.bench;
+
+import cat.proven.petAlert.model.persist.DbConnect;
+import cat.proven.petAlert.model.token.Hash;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Random;
+import javax.imageio.ImageIO;
+
+/**
+ * Generates users, animals, descriptions, coordinates, alerts and messages
+ * for load testing, loaded with batched JDBC inserts through DbConnect. The
+ * same seed always generates the same data. Run it with "ant generate-data".
+ *
+ * Alerts are clustered around cities, most of them are active and a few are
+ * reported. There is one user every 10 alerts and one message every 2
+ * alerts.
+ *
+ * @author Pet Alert
+ */
+public class DataGenerator {
+
+    /* ATTRIBUTES */
+    private static final int BATCH = 1000; //rows per batch and transaction
+    private static final int IMAGES = 8; //distinct images, shared by the animals
+    private static final long DAY = 24 * 3600 * 1000L;
+    //name, latitude, longitude, weight
+    private static final Object[][] CITIES = {
+        {"Barcelona", 41.3851, 2.1734, 30},
+        {"Madrid", 40.4168, -3.7038, 30},
+        {"Valencia", 39.4699, -0.3763, 12},
+        {"Sevilla", 37.3891, -5.9845, 10},
+        {"Zaragoza", 41.6488, -0.8891, 7},
+        {"Bilbao", 43.2630, -2.9350, 6},
+        {"Girona", 41.9794, 2.8214, 3},
+        {"Lleida", 41.6176, 0.6200, 2}
+    };
+    private static final String[] KINDS = {"dog", "cat", "other"};
+    private static final String[][] RACES = {
+        {"labrador", "beagle", "bulldog", "chihuahua", "boxer", "galgo"},
+        {"siames", "persa", "bengali", "comun europeo"},
+        {null}
+    };
+    private static final String[] COLORS = {"black", "white", "brown", "grey", "ginger", "mixed"};
+    private static final String[] NAMES = {"Toby", "Luna", "Rocky", "Nala", "Coco", "Simba", "Kira", "Max"};
+    private final Random random;
+    private final byte[][] images;
+    private final String[] imageHashes;
+    private final int totalWeight;
+
+    /* CONSTRUCTORS */
+    /**
+     * Constructor.
+     *
+     * @param seed random seed
+     * @param imageBytes approximate size of the animal images, 0 for animals
+     * without image
+     * @throws IOException if the images can not be generated
+     */
+    public DataGenerator(long seed, int imageBytes) throws IOException {
+        this.random = new Random(seed);
+        this.images = new byte[imageBytes > 0 ? IMAGES : 0][];
+        this.imageHashes = new String[images.length];
+        for (int i = 0; i < images.length; i++) {
+            images[i] = image(imageBytes);
+            imageHashes[i] = Hash.md5(images[i]);
+        }
+        int weight = 0;
+        for (Object[] city : CITIES) {
+            weight += (Integer) city[3];
+        }
+        this.totalWeight = weight;
+    }
+
+    /* METHODS */
+    /**
+     * Generates the data.
+     *
+     * @param alerts number of alerts to add
+     * @throws SQLException if the data can not be inserted
+     */
+    public void generate(int alerts) throws SQLException {
+        try (Connection conn = DbConnect.getInstance().getConnection()) {
+            if (conn == null) {
+                throw new SQLException("No database connection");
+            }
+            conn.setAutoCommit(false);
+            try {
+                int[] users = insertUsers(conn, Math.max(2, alerts / 10));
+                insertAlerts(conn, alerts, users);
+                insertMessages(conn, alerts / 2, users);
+            } catch (SQLException ex) {
+                conn.rollback();
+                throw ex;
+            }
+        }
+    }
+
+    /**
+     * Adds generated alerts until the database has at least the given number.
+     *
+     * @param alerts number of alerts needed
+     * @param seed random seed
+     * @param imageBytes approximate size of the animal images
+     * @throws SQLException if the data can not be inserted
+     * @throws IOException if the images can not be generated
+     */
+    public static void ensureAlerts(int alerts, long seed, int imageBytes) throws SQLException, IOException {
+        int count;
+        try (Connection conn = DbConnect.getInstance().getConnection()) {
+            if (conn == null) {
+                throw new SQLException("No database connection");
+            }
+            try (Statement st = conn.createStatement();
+                    ResultSet rs = st.executeQuery("SELECT COUNT(*) FROM alerts")) {
+                rs.next();
+                count = rs.getInt(1);
+            }
+        }
+        if (count < alerts) {
+            new DataGenerator(seed + count, imageBytes).generate(alerts - count);
+        }
+    }
+
+    private int[] insertUsers(Connection conn, int count) throws SQLException {
+        int[] ids = new int[count];
+        String prefix = "gen" + Long.toString(random.nextLong() & Long.MAX_VALUE, 36) + "_";
+        String password = Hash.md5("password");
+        try (PreparedStatement st = conn.prepareStatement("INSERT INTO users "
+                + "(name, username, password, mail, population) VALUES (?, ?, ?, ?, ?)",
+                Statement.RETURN_GENERATED_KEYS)) {
+            int done = 0;
+            while (done < count) {
+                int size = Math.min(BATCH, count - done);
+                for (int i = done; i < done + size; i++) {
+                    st.setString(1, NAMES[random.nextInt(NAMES.length)]);
+                    st.setString(2, prefix + i);
+                    st.setString(3, password);
+                    st.setString(4, prefix + i + "@petalert.cat");
+                    st.setString(5, (String) city()[0]);
+                    st.addBatch();
+                }
+                done = executeBatch(st, ids, done);
+                conn.commit();
+            }
+        }
+        return ids;
+    }
+
+    private void insertAlerts(Connection conn, int count, int[] users) throws SQLException {
+        long now = System.currentTimeMillis();
+        try (PreparedStatement coords = conn.prepareStatement("INSERT INTO coordinates "
+                + "(latitude, longitude) VALUES (?, ?)", Statement.RETURN_GENERATED_KEYS);
+                PreparedStatement animals = conn.prepareStatement("INSERT INTO animals "
+                        + "(chip_num, name, kind, hair_color, race, half_blood, age, sex, image, image_hash) "
+                        + "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)", Statement.RETURN_GENERATED_KEYS);
+                PreparedStatement descs = conn.prepareStatement("INSERT INTO descriptions "
+                        + "(title, lost_day_hour, description, phone) VALUES (?, ?, ?, ?)",
+                        Statement.RETURN_GENERATED_KEYS);
+                PreparedStatement alerts = conn.prepareStatement("INSERT INTO alerts "
+                        + "(creation_date, active, report_number, user_id, animal_id, desc_id, coord_id) "
+                        + "VALUES (?, ?, ?, ?, ?, ?, ?)")) {
+            int done = 0;
+            while (done < count) {
+                int size = Math.min(BATCH, count - done);
+                int[] coordIds = new int[size];
+                int[] animalIds = new int[size];
+                int[] descIds = new int[size];
+                long[] lost = new long[size];
+                for (int i = 0; i < size; i++) {
+                    Object[] city = city();
+                    coords.setDouble(1, (Double) city[1] + random.nextGaussian() * 0.05); //~5 km
+                    coords.setDouble(2, (Double) city[2] + random.nextGaussian() * 0.05);
+                    coords.addBatch();
+                    int kind = random.nextInt(KINDS.length);
+                    String name = NAMES[random.nextInt(NAMES.length)];
+                    animals.setObject(1, random.nextInt(3) == 0 ? null : 900000000000000L + random.nextInt(1000000000));
+                    animals.setString(2, name);
+                    animals.setString(3, KINDS[kind]);
+                    animals.setString(4, COLORS[random.nextInt(COLORS.length)]);
+                    animals.setString(5, RACES[kind][random.nextInt(RACES[kind].length)]);
+                    animals.setBoolean(6, random.nextInt(4) == 0);
+                    animals.setInt(7, 1 + random.nextInt(15));
+                    animals.setString(8, random.nextBoolean() ? "M" : "F");
+                    int image = images.length > 0 ? random.nextInt(images.length) : -1;
+                    animals.setBytes(9, image >= 0 ? images[image] : null);
+                    animals.setString(10, image >= 0 ? imageHashes[image] : null);
+                    animals.addBatch();
+                    lost[i] = now - (long) (random.nextDouble() * 90 * DAY);
+                    descs.setString(1, name + " perdido");
+                    descs.setLong(2, lost[i]);
+                    descs.setString(3, "Visto por ultima vez cerca de " + city[0]);
+                    descs.setString(4, String.valueOf(600000000 + random.nextInt(100000000)));
+                    descs.addBatch();
+                }
+                executeBatch(coords, coordIds, 0);
+                executeBatch(animals, animalIds, 0);
+                executeBatch(descs, descIds, 0);
+                for (int i = 0; i < size; i++) {
+                    alerts.setLong(1, lost[i] + (long) (random.nextDouble() * DAY));
+                    alerts.setBoolean(2, random.nextInt(10) != 0); //90% active
+                    alerts.setInt(3, random.nextInt(50) == 0 ? 3 + random.nextInt(10) : 0);
+                    alerts.setInt(4, users[random.nextInt(users.length)]);
+                    alerts.setInt(5, animalIds[i]);
+                    alerts.setInt(6, descIds[i]);
+                    alerts.setInt(7, coordIds[i]);
+                    alerts.addBatch();
+                }
+                alerts.executeBatch();
+                conn.commit();
+                done += size;
+            }
+        }
+    }
+
+    private void insertMessages(Connection conn, int count, int[] users) throws SQLException {
+        long now = System.currentTimeMillis();
+        try (PreparedStatement st = conn.prepareStatement("INSERT INTO messages (title, content, "
+                + "send_date, receipt_date, sender_id, receiver_id) VALUES (?, ?, ?, ?, ?, ?)")) {
+            int done = 0;
+            while (done < count) {
+                int size = Math.min(BATCH, count - done);
+                for (int i = 0; i < size; i++) {
+                    int sender = random.nextInt(users.length);
+                    int receiver = (sender + 1 + random.nextInt(users.length - 1)) % users.length;
+                    long sent = now - (long) (random.nextDouble() * 30 * DAY);
+                    st.setString(1, "Alerta");
+                    st.setString(2, "Creo que he visto a tu mascota");
+                    st.setLong(3, sent);
+                    st.setLong(4, sent + random.nextInt(3600 * 1000));
+                    st.setInt(5, users[sender]);
+                    st.setInt(6, users[receiver]);
+                    st.addBatch();
+                }
+                st.executeBatch();
+                conn.commit();
+                done += size;
+            }
+        }
+    }
+
+    /**
+     * Executes a batch and saves the generated keys from the given position.
+     *
+     * @return position after the last generated key
+     */
+    private int executeBatch(PreparedStatement st, int[] ids, int from) throws SQLException {
+        st.executeBatch();
+        try (ResultSet keys = st.getGeneratedKeys()) {
+            while (keys.next()) {
+                ids[from++] = keys.getInt(1);
+            }
+        }
+        return from;
+    }
+
+    /**
+     * Picks a city by its weight.
+     */
+    private Object[] city() {
+        int n = random.nextInt(totalWeight);
+        int i = 0;
+        while (n >= (Integer) CITIES[i][3]) {
+            n -= (Integer) CITIES[i][3];
+            i++;
+        }
+        return CITIES[i];
+    }
+
+    /**
+     * Jpeg of random noise, growing until it has at least the given size.
+     */
+    private byte[] image(int bytes) throws IOException {
+        byte[] jpeg;
+        int side = 64;
+        do {
+            BufferedImage image = new BufferedImage(side, side, BufferedImage.TYPE_INT_RGB);
+            for (int y = 0; y < side; y++) {
+                for (int x = 0; x < side; x++) {
+                    image.setRGB(x, y, random.nextInt(0x1000000));
+                }
+            }
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            ImageIO.write(image, "jpg", out);
+            jpeg = out.toByteArray();
+            side = (int) Math.ceil(side * Math.max(1.1, Math.sqrt((double) bytes / jpeg.length)));
+        } while (jpeg.length < bytes);
+        return jpeg;
+    }
+
+    /**
+     * Generates data.
+     *
+     * @param args number of alerts (default 100000), seed (default 1905) and
+     * image bytes (default 0, no images)
+     */
+    public static void main(String[] args) throws SQLException, IOException {
+        int alerts = args.length > 0 ? Integer.parseInt(args[0]) : 100000;
+        long seed = args.length > 1 ? Long.parseLong(args[1]) : 1905;
+        int imageBytes = args.length > 2 ? Integer.parseInt(args[2]) : 0;
+        long start = System.currentTimeMillis();
+        new DataGenerator(seed, imageBytes).generate(alerts);
+        System.out.println(alerts + " alerts generated in " + (System.currentTimeMillis() - start) + " ms");
+    }
+}
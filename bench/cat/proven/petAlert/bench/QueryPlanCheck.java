@@ -0,0 +1,119 @@
+package cat.proven.petAlert.bench;
+
+import cat.proven.petAlert.model.Model;
+import cat.proven.petAlert.model.persist.DbConnect;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.Persistence;
+import javax.persistence.Query;
+import org.eclipse.persistence.jpa.JpaEntityManager;
+import org.eclipse.persistence.jpa.JpaQuery;
+import org.eclipse.persistence.queries.DatabaseQuery;
+import org.eclipse.persistence.sessions.DatabaseRecord;
+import org.eclipse.persistence.sessions.Session;
+
+/**
+ * Checks with EXPLAIN that the filtered named queries use an index. It runs
+ * outside the container against the database of persistence.xml, see the
+ * check-query-plans target in build.xml.
+ *
+ * A table read without any possible index fails the check. A table with a
+ * possible index the optimizer did not choose (usual with few rows) is only
+ * reported.
+ *
+ * @author Pet Alert
+ */
+public class QueryPlanCheck {
+
+    /* ATTRIBUTES */
+    //query name followed by parameter name and sample value pairs
+    private static final Object[][] QUERIES = {
+        {"Alert.findAll"},
+        {"Alert.findAllAfter", "lastId", 0},
+        {"Alert.findByReportNumber"},
+        {"Alert.findByAnimalKind", "kind", "dog"},
+        {"Alert.findByAnimalKind_Race", "kind", "dog", "race", "beagle"},
+        {"Alert.findByAnimalKind_Race_Sex", "kind", "dog", "race", "beagle", "sex", "M"},
+        {"Alert.findByAnimalKind_Race_SexAfter", "kind", "dog", "race", "beagle", "sex", "M", "lastId", 0},
+        {"Message.findByUserSent", "id", 1},
+        {"Message.findByUserReceived", "id", 1},
+        {"User.findByToken", "token", "token"},
+        {"User.findUserExpiration", "token", "token"}
+    };
+
+    /**
+     * Runs the check.
+     *
+     * @param args not used
+     */
+    public static void main(String[] args) {
+        EntityManagerFactory emf = Persistence.createEntityManagerFactory("PetAlertPU",
+                Model.standaloneProperties());
+        EntityManager em = emf.createEntityManager();
+        int failures = 0;
+        try (Connection conn = DbConnect.getInstance().getConnection()) {
+            Session session = em.unwrap(JpaEntityManager.class).getActiveSession();
+            for (Object[] named : QUERIES) {
+                failures += explain(conn, (String) named[0], toSql(em, session, named));
+            }
+        } catch (SQLException | RuntimeException ex) {
+            System.err.println(ex.getMessage());
+            failures++;
+        } finally {
+            em.close();
+            emf.close();
+        }
+        System.out.println(failures == 0 ? "All queries use an index" : failures + " queries without index");
+        System.exit(failures == 0 ? 0 : 1);
+    }
+
+    /**
+     * Translates a named query to SQL with the sample values as literals.
+     */
+    private static String toSql(EntityManager em, Session session, Object[] named) {
+        Query query = em.createNamedQuery((String) named[0]);
+        DatabaseRecord values = new DatabaseRecord();
+        for (int i = 1; i < named.length; i += 2) {
+            String parameter = (String) named[i];
+            query.setParameter(parameter, named[i + 1]);
+            values.put(parameter, named[i + 1]);
+        }
+        DatabaseQuery databaseQuery = query.unwrap(JpaQuery.class).getDatabaseQuery();
+        databaseQuery.prepareCall(session, new DatabaseRecord());
+        return databaseQuery.getTranslatedSQLString(session, values);
+    }
+
+    /**
+     * Prints the plan of a query.
+     *
+     * @return 1 if a table has no index to use, 0 otherwise
+     */
+    private static int explain(Connection conn, String name, String sql) throws SQLException {
+        int failed = 0;
+        System.out.println(name + ": " + sql);
+        try (Statement st = conn.createStatement();
+                ResultSet rs = st.executeQuery("EXPLAIN " + sql)) {
+            while (rs.next()) {
+                String table = rs.getString("table");
+                String key = rs.getString("key");
+                String possibleKeys = rs.getString("possible_keys");
+                String status;
+                if (key != null || table == null) { //no table if the optimizer found no rows
+                    status = "OK";
+                } else if (possibleKeys != null) {
+                    status = "WARNING, index not chosen";
+                } else {
+                    status = "FAIL, no index";
+                    failed = 1;
+                }
+                System.out.println("    " + table + " type=" + rs.getString("type")
+                        + " key=" + key + " rows=" + rs.getString("rows") + " " + status);
+            }
+        }
+        return failed;
+    }
+}
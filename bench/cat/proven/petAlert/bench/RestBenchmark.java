@@ -0,0 +1,173 @@
+package cat.proven.petAlert.bench;
+
+import cat.proven.petAlert.logger.ServerLogger;
+import cat.proven.petAlert.model.Model;
+import cat.proven.petAlert.restful.GsonProvider;
+import cat.proven.petAlert.restful.RequestResult;
+import cat.proven.petAlert.restful.services.AlertsService;
+import cat.proven.petAlert.restful.services.LoginService;
+import cat.proven.petAlert.restful.services.MessagesService;
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.sql.SQLException;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import javax.servlet.ServletContext;
+import javax.ws.rs.container.AsyncResponse;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks of the REST hot paths: paging, distance search, search by id,
+ * login and sending messages, including the Json serialization. Services
+ * are called directly with the model connected to the database of
+ * persistence.xml, scaled by DataGenerator (load resources/testData.sql first,
+ * its users log in and send the messages). Run with "ant bench", which adds the
+ * gc profiler for the allocation rate; SampleTime mode reports p99 latency.
+ *
+ * @author Pet Alert
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 10)
+@Fork(1)
+public class RestBenchmark {
+
+    /* ATTRIBUTES */
+    private static final String USERNAME = "userLuis"; //from testData.sql
+    private static final String PASSWORD = "f561aaf6ef0bf14d4208bb46a4ccb3ad";
+    private static final long SEED = 1905;
+    private static final String MESSAGE = "{\"title\":\"Bench\",\"content\":\"Benchmark message\","
+            + "\"senderId\":{\"id\":1},\"receiverId\":{\"id\":2}}";
+
+    @Param({"10000", "100000", "1000000"})
+    private int alerts;
+    private AlertsService alertsService;
+    private LoginService loginService;
+    private MessagesService messagesService;
+    private Model model;
+    private String token;
+
+    @Setup(Level.Trial)
+    public void setUp() throws SQLException, IOException, InterruptedException, ExecutionException {
+        DataGenerator.ensureAlerts(alerts, SEED, 0);
+        ServerLogger logger = new ServerLogger();
+        model = new Model(logger, Model.standaloneProperties());
+        ServletContext context = context(logger, model);
+        alertsService = new AlertsService(context);
+        loginService = new LoginService(context);
+        messagesService = new MessagesService(context);
+        RequestResult login = call(async -> loginService.login(USERNAME, PASSWORD, async));
+        if (login.getResultCode() != 1) {
+            throw new IllegalStateException("Login failed: " + login.getData());
+        }
+        token = GsonProvider.parser().toJson(login.getData());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        model.close();
+    }
+
+    @Benchmark
+    public String showAlerts() throws InterruptedException, ExecutionException {
+        int page = ThreadLocalRandom.current().nextInt(100);
+        return toJson(call(async -> alertsService.showAlerts(String.valueOf(page), null, async)));
+    }
+
+    @Benchmark
+    public String showAlertsByDistance() throws InterruptedException, ExecutionException {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        String latitude = String.valueOf(41.3851 + random.nextGaussian() * 0.5);
+        String longitude = String.valueOf(2.1734 + random.nextGaussian() * 0.5);
+        return toJson(call(async -> alertsService.showAlertsByDistance(latitude, longitude, "0", null,
+                async)));
+    }
+
+    @Benchmark
+    public String showAlertsById() throws InterruptedException, ExecutionException {
+        int id = 1 + ThreadLocalRandom.current().nextInt(alerts);
+        return toJson(call(async -> alertsService.showAlertsById(String.valueOf(id), async)));
+    }
+
+    @Benchmark
+    public String login() throws InterruptedException, ExecutionException {
+        return toJson(call(async -> loginService.login(USERNAME, PASSWORD, async)));
+    }
+
+    @Benchmark
+    public String addMessage() throws InterruptedException, ExecutionException {
+        return toJson(call(async -> messagesService.addMessage(MESSAGE, token, async)));
+    }
+
+    private static String toJson(RequestResult result) {
+        return GsonProvider.exposed().toJson(result);
+    }
+
+    /**
+     * Calls an asynchronous service method and waits for its result, as the
+     * container does before writing the response.
+     */
+    private static RequestResult call(Consumer<AsyncResponse> method)
+            throws InterruptedException, ExecutionException {
+        final CompletableFuture<Object> result = new CompletableFuture<>();
+        AsyncResponse async = (AsyncResponse) Proxy.newProxyInstance(AsyncResponse.class.getClassLoader(),
+                new Class<?>[]{AsyncResponse.class}, (proxy, m, args) -> {
+                    switch (m.getName()) {
+                        case "resume":
+                            return args[0] instanceof Throwable
+                                    ? result.completeExceptionally((Throwable) args[0])
+                                    : result.complete(args[0]);
+                        case "isDone":
+                            return result.isDone();
+                        case "setTimeout":
+                            return true;
+                        case "setTimeoutHandler":
+                            return null;
+                        default:
+                            throw new UnsupportedOperationException(m.getName());
+                    }
+                });
+        method.accept(async);
+        return (RequestResult) result.get();
+    }
+
+    /**
+     * Servlet context with the attributes the services read.
+     */
+    private static ServletContext context(ServerLogger logger, Model model) {
+        final Map<String, Object> attributes = new ConcurrentHashMap<>();
+        attributes.put("logger", logger);
+        attributes.put("model", model);
+        return (ServletContext) Proxy.newProxyInstance(ServletContext.class.getClassLoader(),
+                new Class<?>[]{ServletContext.class}, (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "getAttribute":
+                            return attributes.get((String) args[0]);
+                        case "setAttribute":
+                            attributes.put((String) args[0], args[1]);
+                            return null;
+                        default:
+                            throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+    }
+}
@@ -0,0 +1,76 @@
+package cat.proven.petAlert.bench;
+
+import cat.proven.petAlert.model.Distance;
+import cat.proven.petAlert.model.geo.SpatialIndex;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks of the in-memory spatial index, without database. With the gc
+ * profiler of "ant bench" the allocated bytes per operation
+ * (gc.alloc.rate.norm) must not grow with the number of alerts, only the
+ * returned page is allocated.
+ *
+ * @author Pet Alert
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SpatialIndexBenchmark {
+
+    /* ATTRIBUTES */
+    private static final double LATITUDE = 41.3851;
+    private static final double LONGITUDE = 2.1734;
+
+    @Param({"10000", "100000", "1000000"})
+    private int alerts;
+    private SpatialIndex index;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Random random = new Random(1905);
+        index = new SpatialIndex();
+        for (int id = 0; id < alerts; id++) {
+            index.put(id, LATITUDE + random.nextGaussian() * 2, LONGITUDE + random.nextGaussian() * 2);
+        }
+    }
+
+    @Benchmark
+    public List<Distance> nearestPage() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        return index.nearest(LATITUDE + random.nextGaussian(), LONGITUDE + random.nextGaussian(), 0, 5);
+    }
+
+    @Benchmark
+    public List<Distance> radiusPage() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        return index.nearest(LATITUDE + random.nextGaussian(), LONGITUDE + random.nextGaussian(),
+                50, 0, 5);
+    }
+
+    /**
+     * Every alert is a candidate, the distance kernel runs over all the
+     * slots.
+     */
+    @Benchmark
+    public List<Distance> fullScan() {
+        return index.nearest(-LATITUDE, LONGITUDE + 180, 0, 5);
+    }
+}
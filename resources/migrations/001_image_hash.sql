@@ -0,0 +1,10 @@
+/**
+ * Project: Pet Alert
+ * Image hash, lets alert lists point to the image without loading it.
+ */
+
+USE dam1905;
+
+ALTER TABLE animals ADD image_hash VARCHAR(32) DEFAULT NULL AFTER image;
+
+UPDATE animals SET image_hash = MD5(image) WHERE image IS NOT NULL;
@@ -0,0 +1,10 @@
+/**
+ * Project: Pet Alert
+ * Scaled renditions of the animal images, filled by the server after an
+ * alert is added or modified.
+ */
+
+USE dam1905;
+
+ALTER TABLE animals ADD thumbnail MEDIUMBLOB DEFAULT NULL AFTER image_hash,
+                    ADD medium MEDIUMBLOB DEFAULT NULL AFTER thumbnail;
@@ -0,0 +1,26 @@
+/**
+ * Project: Pet Alert
+ * Secondary indexes for the filters of the named queries. Check them with
+ * "ant check-query-plans" after running this script.
+ */
+
+USE dam1905;
+
+-- Alert.findAll / findAllAfter: InnoDB appends the id, so active = true
+-- ORDER BY a.id is read in index order
+CREATE INDEX idx_alerts_active ON alerts (active);
+-- Alert.findByReportNumber: active = true AND report_number >= 3
+CREATE INDEX idx_alerts_active_report ON alerts (active, report_number);
+-- Alert.findByCreationDate and newest alerts listings
+CREATE INDEX idx_alerts_active_creation ON alerts (active, creation_date);
+
+-- Alert.findByAnimalKind*: animals are filtered first and joined to alerts
+-- through the animal_id foreign key index
+CREATE INDEX idx_animals_kind_race_sex ON animals (kind, race, sex);
+
+-- Message.findByUserSent / findByUserReceived
+CREATE INDEX idx_messages_sender ON messages (sender_id, sender_active);
+CREATE INDEX idx_messages_receiver ON messages (receiver_id, receiver_active);
+
+-- User.findByToken / findUserExpiration, on every authenticated request
+CREATE INDEX idx_users_token ON users (token);
@@ -0,0 +1,34 @@
+/**
+ * Project: Pet Alert
+ * Distance search within a radius. The bounding box of the radius is
+ * filtered first with the coordinates index, so only nearby alerts get their
+ * distance computed.
+ */
+
+USE dam1905;
+
+CREATE INDEX idx_coordinates_lat_lon ON coordinates (latitude, longitude);
+
+DELIMITER //
+
+CREATE PROCEDURE calcDistanceRadius (lat DOUBLE, lon DOUBLE, radius DOUBLE)
+BEGIN
+    -- 111.045 km per degree of latitude, longitude degrees shrink with cos(lat)
+    DECLARE dLat DOUBLE DEFAULT radius / 111.045;
+    DECLARE dLon DOUBLE DEFAULT radius / (111.045 * GREATEST(COS(RADIANS(lat)), 0.00001));
+    SELECT d.id, d.distance FROM (
+        SELECT a.id,
+        (acos(LEAST(1, sin(radians(c.latitude)) * sin(radians(lat)) +
+        cos(radians(c.latitude)) * cos(radians(lat)) *
+        cos(radians(c.longitude) - radians(lon)))) * 6371)
+        AS distance
+        FROM coordinates c JOIN alerts a ON a.coord_id = c.id
+        WHERE c.latitude BETWEEN lat - dLat AND lat + dLat
+        AND c.longitude BETWEEN lon - dLon AND lon + dLon
+        AND a.active = true) d
+    WHERE d.distance <= radius
+    ORDER BY d.distance;
+END;
+//
+
+DELIMITER ;
@@ -0,0 +1,43 @@
+/**
+ * Project: Pet Alert
+ * Native spatial column for the coordinates. location is generated from
+ * latitude and longitude, so MySQL keeps it in sync on every insert and
+ * update (Model.addCoordinate, modifyAlert, batch loads) and fills it for the
+ * existing rows. Needs MySQL 8.0.18 or later (ST_Distance_Sphere on SRID 4326 points).
+ */
+
+USE dam1905;
+
+-- the WKT axis order of SRID 4326 is latitude longitude
+ALTER TABLE coordinates ADD location POINT SRID 4326
+    GENERATED ALWAYS AS (ST_PointFromText(CONCAT('POINT(', latitude, ' ', longitude, ')'), 4326)) STORED NOT NULL;
+
+CREATE SPATIAL INDEX idx_coordinates_location ON coordinates (location);
+
+DROP PROCEDURE IF EXISTS calcDistanceRadius;
+
+DELIMITER //
+
+CREATE PROCEDURE calcDistanceRadius (lat DOUBLE, lon DOUBLE, radius DOUBLE)
+BEGIN
+    -- 111.045 km per degree of latitude, longitude degrees shrink with cos(lat)
+    DECLARE dLat DOUBLE DEFAULT radius / 111.045;
+    DECLARE dLon DOUBLE DEFAULT radius / (111.045 * GREATEST(COS(RADIANS(lat)), 0.00001));
+    DECLARE center POINT DEFAULT ST_PointFromText(CONCAT('POINT(', lat, ' ', lon, ')'), 4326);
+    DECLARE box POLYGON DEFAULT ST_PolygonFromText(CONCAT('POLYGON((',
+        GREATEST(lat - dLat, -90), ' ', GREATEST(lon - dLon, -180), ',',
+        GREATEST(lat - dLat, -90), ' ', LEAST(lon + dLon, 180), ',',
+        LEAST(lat + dLat, 90), ' ', LEAST(lon + dLon, 180), ',',
+        LEAST(lat + dLat, 90), ' ', GREATEST(lon - dLon, -180), ',',
+        GREATEST(lat - dLat, -90), ' ', GREATEST(lon - dLon, -180), '))'), 4326);
+    SELECT d.id, d.distance FROM (
+        SELECT a.id, ST_Distance_Sphere(c.location, center, 6371000) / 1000 AS distance
+        FROM coordinates c JOIN alerts a ON a.coord_id = c.id
+        WHERE MBRContains(box, c.location)
+        AND a.active = true) d
+    WHERE d.distance <= radius
+    ORDER BY d.distance;
+END;
+//
+
+DELIMITER ;
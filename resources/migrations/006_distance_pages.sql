@@ -0,0 +1,49 @@
+/**
+ * Project: Pet Alert
+ * Distance searches that only return one page. With ORDER BY and LIMIT
+ * MySQL keeps the nearest rows in a bounded priority queue instead of
+ * sorting every alert, and only the page is sent to the server.
+ */
+
+USE dam1905;
+
+DELIMITER //
+
+CREATE PROCEDURE calcDistancePage (lat DOUBLE, lon DOUBLE, pageFirst INT, pageMax INT)
+BEGIN
+    SELECT a.id,
+    (acos(LEAST(1, sin(radians(c.latitude)) * sin(radians(lat)) +
+    cos(radians(c.latitude)) * cos(radians(lat)) *
+    cos(radians(c.longitude) - radians(lon)))) * 6371)
+    AS distance
+    FROM alerts a JOIN coordinates c ON a.coord_id = c.id
+    WHERE a.active = true
+    ORDER BY distance
+    LIMIT pageFirst, pageMax;
+END;
+//
+
+CREATE PROCEDURE calcDistanceRadiusPage (lat DOUBLE, lon DOUBLE, radius DOUBLE, pageFirst INT, pageMax INT)
+BEGIN
+    -- 111.045 km per degree of latitude, longitude degrees shrink with cos(lat)
+    DECLARE dLat DOUBLE DEFAULT radius / 111.045;
+    DECLARE dLon DOUBLE DEFAULT radius / (111.045 * GREATEST(COS(RADIANS(lat)), 0.00001));
+    DECLARE center POINT DEFAULT ST_PointFromText(CONCAT('POINT(', lat, ' ', lon, ')'), 4326);
+    DECLARE box POLYGON DEFAULT ST_PolygonFromText(CONCAT('POLYGON((',
+        GREATEST(lat - dLat, -90), ' ', GREATEST(lon - dLon, -180), ',',
+        GREATEST(lat - dLat, -90), ' ', LEAST(lon + dLon, 180), ',',
+        LEAST(lat + dLat, 90), ' ', LEAST(lon + dLon, 180), ',',
+        LEAST(lat + dLat, 90), ' ', GREATEST(lon - dLon, -180), ',',
+        GREATEST(lat - dLat, -90), ' ', GREATEST(lon - dLon, -180), '))'), 4326);
+    SELECT d.id, d.distance FROM (
+        SELECT a.id, ST_Distance_Sphere(c.location, center, 6371000) / 1000 AS distance
+        FROM coordinates c JOIN alerts a ON a.coord_id = c.id
+        WHERE MBRContains(box, c.location)
+        AND a.active = true) d
+    WHERE d.distance <= radius
+    ORDER BY d.distance
+    LIMIT pageFirst, pageMax;
+END;
+//
+
+DELIMITER ;
@@ -0,0 +1,16 @@
+/**
+ * Project: Pet Alert
+ * Reports of the alerts, one per user and alert. report_number of alerts
+ * only counts the first report of each user.
+ */
+
+USE dam1905;
+
+CREATE TABLE alert_reports (
+    alert_id INTEGER NOT NULL,
+    user_id INTEGER NOT NULL,
+    report_date BIGINT NOT NULL,
+    PRIMARY KEY (alert_id, user_id),
+    CONSTRAINT idReportAlert foreign key (alert_id) references alerts (id) on delete cascade on update cascade,
+    CONSTRAINT idReportUser foreign key (user_id) references users (id) on delete cascade on update cascade
+) ENGINE=InnoDb;
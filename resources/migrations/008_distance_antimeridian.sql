@@ -0,0 +1,78 @@
+/**
+ * Project: Pet Alert
+ * Distance searches within a radius near the antimeridian. The bounding box
+ * of the radius is split in two longitude ranges when it crosses 180 or -180,
+ * so the alerts just across the line are found, and covers every longitude
+ * when it reaches a pole.
+ */
+
+USE dam1905;
+
+DROP PROCEDURE IF EXISTS calcDistanceRadius;
+DROP PROCEDURE IF EXISTS calcDistanceRadiusPage;
+
+DELIMITER //
+
+-- box from south west to north east, the WKT axis order of SRID 4326 is latitude longitude
+CREATE FUNCTION latLonBox (south DOUBLE, west DOUBLE, north DOUBLE, east DOUBLE)
+RETURNS POLYGON DETERMINISTIC NO SQL
+BEGIN
+    RETURN ST_PolygonFromText(CONCAT('POLYGON((',
+        south, ' ', west, ',', south, ' ', east, ',', north, ' ', east, ',',
+        north, ' ', west, ',', south, ' ', west, '))'), 4326);
+END;
+//
+
+-- boxes of the radius around a position, wrapped is null unless it crosses the antimeridian
+CREATE PROCEDURE radiusBoxes (lat DOUBLE, lon DOUBLE, radius DOUBLE, OUT box POLYGON, OUT wrapped POLYGON)
+BEGIN
+    -- 111.045 km per degree of latitude, longitude degrees shrink with cos(lat)
+    DECLARE dLat DOUBLE DEFAULT radius / 111.045;
+    DECLARE dLon DOUBLE DEFAULT radius / (111.045 * GREATEST(COS(RADIANS(lat)), 0.00001));
+    DECLARE south DOUBLE DEFAULT GREATEST(lat - dLat, -90);
+    DECLARE north DOUBLE DEFAULT LEAST(lat + dLat, 90);
+    SET wrapped = NULL;
+    IF south <= -90 OR north >= 90 OR dLon >= 180 THEN
+        SET box = latLonBox(south, -180, north, 180); -- around a pole, every longitude
+    ELSEIF lon - dLon < -180 THEN
+        SET box = latLonBox(south, -180, north, lon + dLon);
+        SET wrapped = latLonBox(south, lon - dLon + 360, north, 180);
+    ELSEIF lon + dLon > 180 THEN
+        SET box = latLonBox(south, lon - dLon, north, 180);
+        SET wrapped = latLonBox(south, -180, north, lon + dLon - 360);
+    ELSE
+        SET box = latLonBox(south, lon - dLon, north, lon + dLon);
+    END IF;
+END;
+//
+
+CREATE PROCEDURE calcDistanceRadius (lat DOUBLE, lon DOUBLE, radius DOUBLE)
+BEGIN
+    CALL calcDistanceRadiusPage(lat, lon, radius, 0, 2147483647);
+END;
+//
+
+CREATE PROCEDURE calcDistanceRadiusPage (lat DOUBLE, lon DOUBLE, radius DOUBLE, pageFirst INT, pageMax INT)
+BEGIN
+    DECLARE center POINT DEFAULT ST_PointFromText(CONCAT('POINT(', lat, ' ', lon, ')'), 4326);
+    DECLARE box POLYGON;
+    DECLARE wrapped POLYGON;
+    CALL radiusBoxes(lat, lon, radius, box, wrapped);
+    -- one query per box, so each one filters with the spatial index
+    SELECT d.id, d.distance FROM (
+        SELECT a.id, ST_Distance_Sphere(c.location, center, 6371000) / 1000 AS distance
+        FROM coordinates c JOIN alerts a ON a.coord_id = c.id
+        WHERE MBRContains(box, c.location)
+        AND a.active = true
+        UNION ALL
+        SELECT a.id, ST_Distance_Sphere(c.location, center, 6371000) / 1000 AS distance
+        FROM coordinates c JOIN alerts a ON a.coord_id = c.id
+        WHERE wrapped IS NOT NULL AND MBRContains(wrapped, c.location)
+        AND a.active = true) d
+    WHERE d.distance <= radius
+    ORDER BY d.distance
+    LIMIT pageFirst, pageMax;
+END;
+//
+
+DELIMITER ;
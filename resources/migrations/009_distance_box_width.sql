@@ -0,0 +1,40 @@
+/**
+ * Project: Pet Alert
+ * Exact longitude width of the bounding box of a radius. radius / cos(lat)
+ * is too narrow for large radii and high latitudes, the circle of angular
+ * radius r reaches asin(sin(r) / cos(lat)) degrees of longitude away, and
+ * every longitude when it contains a pole.
+ */
+
+USE dam1905;
+
+DROP PROCEDURE IF EXISTS radiusBoxes;
+
+DELIMITER //
+
+-- boxes of the radius around a position, wrapped is null unless it crosses the antimeridian
+CREATE PROCEDURE radiusBoxes (lat DOUBLE, lon DOUBLE, radius DOUBLE, OUT box POLYGON, OUT wrapped POLYGON)
+BEGIN
+    DECLARE angle DOUBLE DEFAULT radius / 6371; -- central angle, same earth radius as the distances
+    DECLARE south DOUBLE DEFAULT GREATEST(lat - DEGREES(angle), -90);
+    DECLARE north DOUBLE DEFAULT LEAST(lat + DEGREES(angle), 90);
+    DECLARE dLon DOUBLE DEFAULT 180;
+    IF SIN(LEAST(angle, PI() / 2)) < COS(RADIANS(lat)) THEN
+        SET dLon = DEGREES(ASIN(SIN(angle) / COS(RADIANS(lat))));
+    END IF;
+    SET wrapped = NULL;
+    IF south <= -90 OR north >= 90 OR dLon >= 180 THEN
+        SET box = latLonBox(south, -180, north, 180); -- around a pole, every longitude
+    ELSEIF lon - dLon < -180 THEN
+        SET box = latLonBox(south, -180, north, lon + dLon);
+        SET wrapped = latLonBox(south, lon - dLon + 360, north, 180);
+    ELSEIF lon + dLon > 180 THEN
+        SET box = latLonBox(south, lon - dLon, north, 180);
+        SET wrapped = latLonBox(south, -180, north, lon + dLon - 360);
+    ELSE
+        SET box = latLonBox(south, lon - dLon, north, lon + dLon);
+    END IF;
+END;
+//
+
+DELIMITER ;
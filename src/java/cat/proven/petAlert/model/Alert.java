@@ -4,6 +4,7 @@ import com.google.gson.annotations.Expose;
 import java.io.Serializable;
 import java.util.Objects;
 import javax.persistence.Basic;
+import javax.persistence.Cacheable;
 import javax.persistence.CascadeType;
 import javax.persistence.Column;
 import javax.persistence.Entity;
@@ -18,6 +19,10 @@ import javax.persistence.NamedQuery;
 import javax.persistence.Table;
 import javax.validation.constraints.NotNull;
 import javax.xml.bind.annotation.XmlRootElement;
+import org.eclipse.persistence.annotations.Cache;
+import org.eclipse.persistence.annotations.CacheCoordinationType;
+import org.eclipse.persistence.annotations.CacheType;
+import org.eclipse.persistence.config.CacheIsolationType;
 
 /**
  * ADT Alert
@@ -27,17 +32,27 @@ import javax.xml.bind.annotation.XmlRootElement;
 @Entity
 @Table(name = "alerts")
 @XmlRootElement
+@Cacheable
+@Cache(type = CacheType.SOFT_WEAK, size = 5000, expiry = 10 * 60 * 1000, isolation = CacheIsolationType.SHARED,
+        coordinationType = CacheCoordinationType.INVALIDATE_CHANGED_OBJECTS)
 /* QUERIES */
 @NamedQueries({
-    @NamedQuery(name = "Alert.findAll", query = "SELECT a FROM Alert a WHERE a.active = true")
+    @NamedQuery(name = "Alert.findAll", query = "SELECT a FROM Alert a WHERE a.active = true ORDER BY a.id")
+    , @NamedQuery(name = "Alert.findAllAfter", query = "SELECT a FROM Alert a WHERE a.active = true AND a.id > :lastId ORDER BY a.id")
+    , @NamedQuery(name = "Alert.findActiveCoordinates", query = "SELECT a.id, c.latitude, c.longitude FROM Alert a JOIN a.coordId c WHERE a.active = true")
     , @NamedQuery(name = "Alert.findById", query = "SELECT a FROM Alert a WHERE a.id = :id")
+    , @NamedQuery(name = "Alert.findByIds", query = "SELECT a FROM Alert a WHERE a.id IN :ids")
     , @NamedQuery(name = "Alert.findByCreationDate", query = "SELECT a FROM Alert a WHERE a.creationDate = :creationDate")
     , @NamedQuery(name = "Alert.findByActive", query = "SELECT a FROM Alert a WHERE a.active = :active")
-    , @NamedQuery(name = "Alert.findByReportNumber", query = "SELECT a FROM Alert a WHERE a.reportNumber >= 3 AND a.active = true ORDER BY a.reportNumber")
-    , @NamedQuery(name = "Alert.findByAnimalKind", query = "SELECT a FROM Alert a JOIN a.animalId b WHERE b.kind = :kind AND a.active = true")
+    , @NamedQuery(name = "Alert.findReportedCounts", query = "SELECT a.id, a.reportNumber FROM Alert a WHERE a.active = true AND a.reportNumber > 0")
+    , @NamedQuery(name = "Alert.findByReportNumber", query = "SELECT a FROM Alert a WHERE a.reportNumber >= 3 AND a.active = true ORDER BY a.reportNumber, a.id")
+    , @NamedQuery(name = "Alert.findByAnimalKind", query = "SELECT a FROM Alert a JOIN a.animalId b WHERE b.kind = :kind AND a.active = true ORDER BY a.id")
+    , @NamedQuery(name = "Alert.findByAnimalKindAfter", query = "SELECT a FROM Alert a JOIN a.animalId b WHERE b.kind = :kind AND a.active = true AND a.id > :lastId ORDER BY a.id")
     , @NamedQuery(name = "Alert.findByAnimalKind_Sex", query = "SELECT a FROM Alert a JOIN a.animalId b WHERE b.kind = :kind and b.sex = :sex AND a.active = true")
-    , @NamedQuery(name = "Alert.findByAnimalKind_Race", query = "SELECT a FROM Alert a JOIN a.animalId b WHERE b.kind = :kind and b.race = :race AND a.active = true")
-    , @NamedQuery(name = "Alert.findByAnimalKind_Race_Sex", query = "SELECT a FROM Alert a JOIN a.animalId b WHERE b.kind = :kind and b.race = :race and b.sex = :sex AND a.active = true")})
+    , @NamedQuery(name = "Alert.findByAnimalKind_Race", query = "SELECT a FROM Alert a JOIN a.animalId b WHERE b.kind = :kind and b.race = :race AND a.active = true ORDER BY a.id")
+    , @NamedQuery(name = "Alert.findByAnimalKind_RaceAfter", query = "SELECT a FROM Alert a JOIN a.animalId b WHERE b.kind = :kind and b.race = :race AND a.active = true AND a.id > :lastId ORDER BY a.id")
+    , @NamedQuery(name = "Alert.findByAnimalKind_Race_Sex", query = "SELECT a FROM Alert a JOIN a.animalId b WHERE b.kind = :kind and b.race = :race and b.sex = :sex AND a.active = true ORDER BY a.id")
+    , @NamedQuery(name = "Alert.findByAnimalKind_Race_SexAfter", query = "SELECT a FROM Alert a JOIN a.animalId b WHERE b.kind = :kind and b.race = :race and b.sex = :sex AND a.active = true AND a.id > :lastId ORDER BY a.id")})
 public class Alert implements Serializable {
 
     /* ATTRIBUTES */
@@ -169,6 +184,7 @@ public class Alert implements Serializable {
     @Override
     public int hashCode() {
         int hash = 5;
+        hash = 59 * hash + Objects.hashCode(this.id);
         return hash;
     }
 
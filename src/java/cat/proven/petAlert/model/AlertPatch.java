@@ -0,0 +1,235 @@
+package cat.proven.petAlert.model;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+
+/**
+ * ADT AlertPatch, the fields of an alert to change. Fields of the alert, its
+ * animal, description and coordinate are sent flat, the ones that are null
+ * are not changed. The report number is not included, it only changes with
+ * the reports.
+ *
+ * @author Pet Alert
+ */
+public class AlertPatch {
+
+    /* ATTRIBUTES */
+    //alerts
+    private Long creationDate;
+    private Boolean active;
+    //animals
+    private BigInteger chipNum;
+    private String name;
+    private String kind;
+    private String hairColor;
+    private String race;
+    private Boolean halfBlood;
+    private Integer age;
+    private String sex;
+    //descriptions
+    private String title;
+    private Long lostDayHour;
+    private String description;
+    private String phone;
+    //coordinates
+    private BigDecimal latitude;
+    private BigDecimal longitude;
+
+    /* CONSTRUCTORS */
+    public AlertPatch() {
+    }
+
+    /* METHODS */
+    /**
+     * Checks if the patch changes a table.
+     *
+     * @param table alerts, animals, descriptions or coordinates
+     * @return true if any field of the table is set
+     */
+    public boolean changes(String table) {
+        boolean changes;
+        switch (table) {
+            case "alerts":
+                changes = creationDate != null || active != null;
+                break;
+            case "animals":
+                changes = chipNum != null || name != null || kind != null || hairColor != null
+                        || race != null || halfBlood != null || age != null || sex != null;
+                break;
+            case "descriptions":
+                changes = title != null || lostDayHour != null || description != null || phone != null;
+                break;
+            case "coordinates":
+                changes = latitude != null || longitude != null;
+                break;
+            default:
+                changes = false;
+                break;
+        }
+        return changes;
+    }
+
+    /**
+     * Checks if the patch changes anything.
+     *
+     * @return true if no field is set
+     */
+    public boolean isEmpty() {
+        return !changes("alerts") && !changes("animals") && !changes("descriptions")
+                && !changes("coordinates");
+    }
+
+    /* GETTERS AND SETTERS */
+    public Long getCreationDate() {
+        return creationDate;
+    }
+
+    public void setCreationDate(Long creationDate) {
+        this.creationDate = creationDate;
+    }
+
+    public Boolean getActive() {
+        return active;
+    }
+
+    public void setActive(Boolean active) {
+        this.active = active;
+    }
+
+    public BigInteger getChipNum() {
+        return chipNum;
+    }
+
+    public void setChipNum(BigInteger chipNum) {
+        this.chipNum = chipNum;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public String getKind() {
+        return kind;
+    }
+
+    public void setKind(String kind) {
+        this.kind = kind;
+    }
+
+    public String getHairColor() {
+        return hairColor;
+    }
+
+    public void setHairColor(String hairColor) {
+        this.hairColor = hairColor;
+    }
+
+    public String getRace() {
+        return race;
+    }
+
+    public void setRace(String race) {
+        this.race = race;
+    }
+
+    public Boolean getHalfBlood() {
+        return halfBlood;
+    }
+
+    public void setHalfBlood(Boolean halfBlood) {
+        this.halfBlood = halfBlood;
+    }
+
+    public Integer getAge() {
+        return age;
+    }
+
+    public void setAge(Integer age) {
+        this.age = age;
+    }
+
+    public String getSex() {
+        return sex;
+    }
+
+    public void setSex(String sex) {
+        this.sex = sex;
+    }
+
+    public String getTitle() {
+        return title;
+    }
+
+    public void setTitle(String title) {
+        this.title = title;
+    }
+
+    public Long getLostDayHour() {
+        return lostDayHour;
+    }
+
+    public void setLostDayHour(Long lostDayHour) {
+        this.lostDayHour = lostDayHour;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    public void setDescription(String description) {
+        this.description = description;
+    }
+
+    public String getPhone() {
+        return phone;
+    }
+
+    public void setPhone(String phone) {
+        this.phone = phone;
+    }
+
+    public BigDecimal getLatitude() {
+        return latitude;
+    }
+
+    public void setLatitude(BigDecimal latitude) {
+        this.latitude = latitude;
+    }
+
+    public BigDecimal getLongitude() {
+        return longitude;
+    }
+
+    public void setLongitude(BigDecimal longitude) {
+        this.longitude = longitude;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("AlertPatch{");
+        sb.append("creationDate=").append(creationDate);
+        sb.append(", active=").append(active);
+        sb.append(", chipNum=").append(chipNum);
+        sb.append(", name=").append(name);
+        sb.append(", kind=").append(kind);
+        sb.append(", hairColor=").append(hairColor);
+        sb.append(", race=").append(race);
+        sb.append(", halfBlood=").append(halfBlood);
+        sb.append(", age=").append(age);
+        sb.append(", sex=").append(sex);
+        sb.append(", title=").append(title);
+        sb.append(", lostDayHour=").append(lostDayHour);
+        sb.append(", description=").append(description);
+        sb.append(", phone=").append(phone);
+        sb.append(", latitude=").append(latitude);
+        sb.append(", longitude=").append(longitude);
+        sb.append('}');
+        return sb.toString();
+    }
+
+}
@@ -1,11 +1,13 @@
 package cat.proven.petAlert.model;
 
+import cat.proven.petAlert.model.token.Hash;
 import com.google.gson.annotations.Expose;
 import java.io.Serializable;
 import java.math.BigInteger;
 import java.util.List;
 import java.util.Objects;
 import javax.persistence.Basic;
+import javax.persistence.Cacheable;
 import javax.persistence.CascadeType;
 import javax.persistence.Column;
 import javax.persistence.Entity;
@@ -17,11 +19,18 @@ import javax.persistence.Lob;
 import javax.persistence.NamedQueries;
 import javax.persistence.NamedQuery;
 import javax.persistence.OneToMany;
+import javax.persistence.PostLoad;
+import javax.persistence.PrePersist;
 import javax.persistence.Table;
+import javax.persistence.Transient;
 import javax.validation.constraints.NotNull;
 import javax.validation.constraints.Size;
 import javax.xml.bind.annotation.XmlRootElement;
 import javax.xml.bind.annotation.XmlTransient;
+import org.eclipse.persistence.annotations.Cache;
+import org.eclipse.persistence.annotations.CacheCoordinationType;
+import org.eclipse.persistence.annotations.CacheType;
+import org.eclipse.persistence.config.CacheIsolationType;
 
 /**
  * ADT Animal
@@ -31,6 +40,9 @@ import javax.xml.bind.annotation.XmlTransient;
 @Entity
 @Table(name = "animals")
 @XmlRootElement
+@Cacheable
+@Cache(type = CacheType.SOFT_WEAK, size = 500, expiry = 30 * 60 * 1000, isolation = CacheIsolationType.SHARED,
+        coordinationType = CacheCoordinationType.INVALIDATE_CHANGED_OBJECTS)
 /* QUERIES */
 @NamedQueries({
     @NamedQuery(name = "Animal.findAll", query = "SELECT a FROM Animal a")
@@ -42,7 +54,11 @@ import javax.xml.bind.annotation.XmlTransient;
     , @NamedQuery(name = "Animal.findByRace", query = "SELECT a FROM Animal a WHERE a.race = :race")
     , @NamedQuery(name = "Animal.findByHalfBlood", query = "SELECT a FROM Animal a WHERE a.halfBlood = :halfBlood")
     , @NamedQuery(name = "Animal.findByAge", query = "SELECT a FROM Animal a WHERE a.age = :age")
-    , @NamedQuery(name = "Animal.findBySex", query = "SELECT a FROM Animal a WHERE a.sex = :sex")})
+    , @NamedQuery(name = "Animal.findBySex", query = "SELECT a FROM Animal a WHERE a.sex = :sex")
+    , @NamedQuery(name = "Animal.findImage", query = "SELECT a.image, a.imageHash FROM Animal a WHERE a.id = :id")
+    , @NamedQuery(name = "Animal.findThumbnail", query = "SELECT a.thumbnail, a.imageHash FROM Animal a WHERE a.id = :id")
+    , @NamedQuery(name = "Animal.findMedium", query = "SELECT a.medium, a.imageHash FROM Animal a WHERE a.id = :id")
+    , @NamedQuery(name = "Animal.updateRenditions", query = "UPDATE Animal a SET a.thumbnail = :thumbnail, a.medium = :medium WHERE a.id = :id AND a.imageHash = :imageHash")})
 public class Animal implements Serializable {
 
     /* ATTRIBUTES */
@@ -90,9 +106,27 @@ public class Animal implements Serializable {
     @Expose
     private Integer age;
     @Lob
+    @Basic(fetch = FetchType.LAZY)
     @Column(name = "image")
+    byte[] image; //served by /animals/{id}/image, not in Json responses
+    @Size(max = 32)
+    @Column(name = "image_hash")
     @Expose
-    byte[] image;
+    private String imageHash; //md5 of the image, null if there is no image
+    @Lob
+    @Basic(fetch = FetchType.LAZY)
+    @Column(name = "thumbnail")
+    private byte[] thumbnail; //scaled by the server after the image is saved
+    @Lob
+    @Basic(fetch = FetchType.LAZY)
+    @Column(name = "medium")
+    private byte[] medium;
+    @Transient
+    @Expose
+    private String imageUrl;
+    @Transient
+    @Expose
+    private String thumbnailUrl;
     @OneToMany(cascade = CascadeType.ALL, mappedBy = "animalId", fetch = FetchType.LAZY)
     private List<Alert> alertsList;
 
@@ -201,6 +235,41 @@ public class Animal implements Serializable {
 
     public void setImage(byte[] image) {
         this.image = image;
+        this.imageHash = image != null ? Hash.md5(image) : null;
+        this.thumbnail = null; //scaled again from the new image
+        this.medium = null;
+    }
+
+    public String getImageHash() {
+        return imageHash;
+    }
+
+    public String getImageUrl() {
+        return imageUrl;
+    }
+
+    public String getThumbnailUrl() {
+        return thumbnailUrl;
+    }
+
+    /**
+     * Sets the image url relative to the services path once loaded. It uses
+     * the hash so the lazy image is not loaded.
+     */
+    @PostLoad
+    private void loadImageUrl() {
+        imageUrl = imageHash != null ? "animals/" + id + "/image" : null;
+        thumbnailUrl = imageUrl != null ? imageUrl + "?size=thumbnail" : null;
+    }
+
+    /**
+     * Sets the image hash of animals received from the clients.
+     */
+    @PrePersist
+    private void hashImage() {
+        imageHash = image != null ? Hash.md5(image) : null;
+        thumbnail = null; //only the server scales the images
+        medium = null;
     }
 
     @XmlTransient
@@ -215,6 +284,7 @@ public class Animal implements Serializable {
     @Override
     public int hashCode() {
         int hash = 7;
+        hash = 59 * hash + Objects.hashCode(this.id);
         return hash;
     }
 
@@ -249,7 +319,7 @@ public class Animal implements Serializable {
         sb.append(", race=").append(race);
         sb.append(", halfBlood=").append(halfBlood);
         sb.append(", age=").append(age);
-        sb.append(", image=").append(image);
+        sb.append(", imageHash=").append(imageHash);
         sb.append('}');
 
         return sb.toString();
@@ -0,0 +1,43 @@
+package cat.proven.petAlert.model;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Hits and misses of a cache, counted without contention between request
+ * threads.
+ *
+ * @author Pet Alert
+ */
+public class CacheCounter {
+
+    /* ATTRIBUTES */
+    private final String name;
+    private final LongAdder hits;
+    private final LongAdder misses;
+
+    /* CONSTRUCTORS */
+    public CacheCounter(String name) {
+        this.name = name;
+        this.hits = new LongAdder();
+        this.misses = new LongAdder();
+    }
+
+    /* METHODS */
+    public void hit() {
+        hits.increment();
+    }
+
+    public void miss() {
+        misses.increment();
+    }
+
+    /**
+     * Current counts of the cache.
+     *
+     * @param size cached entries, -1 if unknown
+     * @return cache statistics
+     */
+    public CacheStatistics getStatistics(long size) {
+        return new CacheStatistics(name, hits.sum(), misses.sum(), size);
+    }
+}
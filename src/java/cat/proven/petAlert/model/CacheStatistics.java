@@ -0,0 +1,90 @@
+package cat.proven.petAlert.model;
+
+import com.google.gson.annotations.Expose;
+
+/**
+ * ADT CacheStatistics
+ *
+ * @author Pet Alert
+ */
+public class CacheStatistics {
+
+    /* ATTRIBUTES */
+    @Expose
+    private String name;
+    @Expose
+    private long hits;
+    @Expose
+    private long misses;
+    @Expose
+    private long size; //cached entries, -1 if unknown
+    @Expose
+    private double hitRatio;
+
+    /* CONSTRUCTORS */
+    public CacheStatistics() {
+    }
+
+    public CacheStatistics(String name, long hits, long misses, long size) {
+        this.name = name;
+        this.hits = hits;
+        this.misses = misses;
+        this.size = size;
+        this.hitRatio = hits + misses > 0 ? (double) hits / (hits + misses) : 0;
+    }
+
+    /* GETTERS AND SETTERS */
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public long getHits() {
+        return hits;
+    }
+
+    public void setHits(long hits) {
+        this.hits = hits;
+    }
+
+    public long getMisses() {
+        return misses;
+    }
+
+    public void setMisses(long misses) {
+        this.misses = misses;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    public void setSize(long size) {
+        this.size = size;
+    }
+
+    public double getHitRatio() {
+        return hitRatio;
+    }
+
+    public void setHitRatio(double hitRatio) {
+        this.hitRatio = hitRatio;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("CacheStatistics{");
+        sb.append("name=").append(name);
+        sb.append(", hits=").append(hits);
+        sb.append(", misses=").append(misses);
+        sb.append(", size=").append(size);
+        sb.append(", hitRatio=").append(hitRatio);
+        sb.append('}');
+        return sb.toString();
+    }
+
+}
@@ -6,6 +6,7 @@ import java.math.BigDecimal;
 import java.util.List;
 import java.util.Objects;
 import javax.persistence.Basic;
+import javax.persistence.Cacheable;
 import javax.persistence.CascadeType;
 import javax.persistence.Column;
 import javax.persistence.Entity;
@@ -20,6 +21,10 @@ import javax.persistence.Table;
 import javax.validation.constraints.NotNull;
 import javax.xml.bind.annotation.XmlRootElement;
 import javax.xml.bind.annotation.XmlTransient;
+import org.eclipse.persistence.annotations.Cache;
+import org.eclipse.persistence.annotations.CacheCoordinationType;
+import org.eclipse.persistence.annotations.CacheType;
+import org.eclipse.persistence.config.CacheIsolationType;
 
 /**
  * ADT Coordinate
@@ -29,6 +34,9 @@ import javax.xml.bind.annotation.XmlTransient;
 @Entity
 @Table(name = "coordinates")
 @XmlRootElement
+@Cacheable
+@Cache(type = CacheType.SOFT_WEAK, size = 5000, expiry = 10 * 60 * 1000, isolation = CacheIsolationType.SHARED,
+        coordinationType = CacheCoordinationType.INVALIDATE_CHANGED_OBJECTS)
 /* QUERIES */
 @NamedQueries({
     @NamedQuery(name = "Coordinate.findAll", query = "SELECT c FROM Coordinate c")
@@ -114,6 +122,7 @@ public class Coordinate implements Serializable {
     @Override
     public int hashCode() {
         int hash = 3;
+        hash = 59 * hash + Objects.hashCode(this.id);
         return hash;
     }
 
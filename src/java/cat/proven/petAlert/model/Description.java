@@ -5,6 +5,7 @@ import java.io.Serializable;
 import java.util.List;
 import java.util.Objects;
 import javax.persistence.Basic;
+import javax.persistence.Cacheable;
 import javax.persistence.CascadeType;
 import javax.persistence.Column;
 import javax.persistence.Entity;
@@ -20,6 +21,10 @@ import javax.validation.constraints.NotNull;
 import javax.validation.constraints.Size;
 import javax.xml.bind.annotation.XmlRootElement;
 import javax.xml.bind.annotation.XmlTransient;
+import org.eclipse.persistence.annotations.Cache;
+import org.eclipse.persistence.annotations.CacheCoordinationType;
+import org.eclipse.persistence.annotations.CacheType;
+import org.eclipse.persistence.config.CacheIsolationType;
 
 /**
  * ADT Description
@@ -29,6 +34,9 @@ import javax.xml.bind.annotation.XmlTransient;
 @Entity
 @Table(name = "descriptions")
 @XmlRootElement
+@Cacheable
+@Cache(type = CacheType.SOFT_WEAK, size = 5000, expiry = 10 * 60 * 1000, isolation = CacheIsolationType.SHARED,
+        coordinationType = CacheCoordinationType.INVALIDATE_CHANGED_OBJECTS)
 /* QUERIES */
 @NamedQueries({
     @NamedQuery(name = "Description.findAll", query = "SELECT d FROM Description d")
@@ -148,6 +156,7 @@ public class Description implements Serializable {
     @Override
     public int hashCode() {
         int hash = 7;
+        hash = 59 * hash + Objects.hashCode(this.id);
         return hash;
     }
 
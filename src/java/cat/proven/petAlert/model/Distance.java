@@ -13,13 +13,13 @@ public class Distance {
     @Expose
     private int id;
     @Expose
-    private Double distance;
+    private double distance;
 
     /* CONSTRUCTORS */
     public Distance() {
     }
 
-    public Distance(int id, Double distance) {
+    public Distance(int id, double distance) {
         this.id = id;
         this.distance = distance;
     }
@@ -33,11 +33,11 @@ public class Distance {
         this.id = id;
     }
 
-    public Double getDistance() {
+    public double getDistance() {
         return distance;
     }
 
-    public void setDistance(Double distance) {
+    public void setDistance(double distance) {
         this.distance = distance;
     }
 
@@ -0,0 +1,78 @@
+package cat.proven.petAlert.model;
+
+import com.google.gson.annotations.Expose;
+
+/**
+ * ADT ItemResult, result of one item of a batch request.
+ *
+ * @author Pet Alert
+ */
+public class ItemResult {
+
+    /* ATTRIBUTES */
+    @Expose
+    private int index; //position of the item in the request
+    @Expose
+    private Integer id; //id of the saved item, null if it was not saved
+    @Expose
+    private int resultCode;
+    @Expose
+    private String message;
+
+    /* CONSTRUCTORS */
+    public ItemResult() {
+    }
+
+    public ItemResult(int index, Integer id, int resultCode, String message) {
+        this.index = index;
+        this.id = id;
+        this.resultCode = resultCode;
+        this.message = message;
+    }
+
+    /* GETTERS AND SETTERS */
+    public int getIndex() {
+        return index;
+    }
+
+    public void setIndex(int index) {
+        this.index = index;
+    }
+
+    public Integer getId() {
+        return id;
+    }
+
+    public void setId(Integer id) {
+        this.id = id;
+    }
+
+    public int getResultCode() {
+        return resultCode;
+    }
+
+    public void setResultCode(int resultCode) {
+        this.resultCode = resultCode;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    public void setMessage(String message) {
+        this.message = message;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("ItemResult{");
+        sb.append("index=").append(index);
+        sb.append(", id=").append(id);
+        sb.append(", resultCode=").append(resultCode);
+        sb.append(", message=").append(message);
+        sb.append('}');
+        return sb.toString();
+    }
+
+}
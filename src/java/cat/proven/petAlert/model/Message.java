@@ -189,6 +189,7 @@ public class Message implements Serializable {
     @Override
     public int hashCode() {
         int hash = 3;
+        hash = 59 * hash + Objects.hashCode(this.id);
         return hash;
     }
 
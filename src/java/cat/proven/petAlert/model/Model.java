@@ -1,10 +1,38 @@
 package cat.proven.petAlert.model;
 
 import cat.proven.petAlert.logger.ServerLogger;
+import cat.proven.petAlert.model.geo.DistanceCache;
+import cat.proven.petAlert.model.geo.SpatialIndex;
+import cat.proven.petAlert.model.image.Image;
+import cat.proven.petAlert.model.image.ImageCache;
+import cat.proven.petAlert.model.image.ImageScaler;
+import cat.proven.petAlert.model.image.Rendition;
+import cat.proven.petAlert.model.persist.AlertDAO;
+import cat.proven.petAlert.model.persist.DbConnect;
 import cat.proven.petAlert.model.persist.DistanceDAO;
+import cat.proven.petAlert.model.persist.PoolStatistics;
+import cat.proven.petAlert.model.report.ModerationQueue;
+import cat.proven.petAlert.model.report.ReportBuffer;
 import cat.proven.petAlert.model.token.AuthToken;
+import cat.proven.petAlert.model.token.Hash;
+import cat.proven.petAlert.model.token.TokenCache;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import javax.persistence.EntityManager;
 import javax.persistence.EntityManagerFactory;
@@ -21,37 +49,249 @@ import org.eclipse.persistence.exceptions.DatabaseException;
  */
 public class Model {
 
-    EntityManager em;
+    private final EntityManagerFactory emf;
     private ServerLogger logger;
     private DistanceDAO dDao;
+    private AlertDAO aDao;
+    private volatile SpatialIndex alertIndex;
+    private final Object indexLock = new Object();
+    private final DistanceCache distanceCache = new DistanceCache();
+    private final TokenCache tokenCache = new TokenCache();
+    //lookups by primary key in the shared entity cache
+    private final CacheCounter alertCounter = new CacheCounter("alerts");
+    private final CacheCounter userCounter = new CacheCounter("users");
+    private final ImageCache imageCache = new ImageCache(64L * 1024 * 1024); //64 MB
+    private final Set<Integer> missingRenditions = ConcurrentHashMap.newKeySet(); //being scaled
+    //scales the images out of the request threads
+    private final ExecutorService renditionExecutor = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "image-renditions");
+        t.setDaemon(true);
+        return t;
+    });
+    //CHK_kind and CHK_sex of the animals table
+    private static final List<String> ANIMAL_KINDS = Arrays.asList("dog", "cat", "other");
+    private static final List<String> ANIMAL_SEXES = Arrays.asList("M", "F");
+    private static final long REPORT_FLUSH_MILLIS = 250;
+    private final ReportBuffer reportBuffer = new ReportBuffer();
+    private volatile ModerationQueue moderationQueue;
+    private final Object flushLock = new Object();
+    //saves the buffered reports out of the request threads
+    private final ScheduledExecutorService reportFlusher = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "report-flush");
+        t.setDaemon(true);
+        return t;
+    });
 
     /**
-     * Model class constructor
+     * Model class constructor. The entity manager factory is shared by all
+     * requests, each operation works with its own short-lived entity manager
+     * because entity managers are not thread-safe.
      *
      * @param logger ServerLogger object
      */
     public Model(ServerLogger logger) {
-        EntityManagerFactory emf = Persistence.createEntityManagerFactory("PetAlertPU");
-        this.em = emf.createEntityManager();
+        this(logger, Collections.<String, String>emptyMap());
+    }
+
+    /**
+     * Model class constructor with persistence unit properties, used to run
+     * the model out of the container (benchmarks and tools).
+     *
+     * @param logger ServerLogger object
+     * @param properties properties overriding the ones of persistence.xml
+     */
+    public Model(ServerLogger logger, Map<String, String> properties) {
+        this.emf = Persistence.createEntityManagerFactory("PetAlertPU", properties);
         this.logger = logger;
         dDao = new DistanceDAO();
+        aDao = new AlertDAO(logger);
+        reportFlusher.scheduleWithFixedDelay(this::flushReports, REPORT_FLUSH_MILLIS,
+                REPORT_FLUSH_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Properties to use the persistence unit without the container data
+     * source, connecting with the jdbc properties of persistence.xml.
+     *
+     * @return persistence unit properties
+     */
+    public static Map<String, String> standaloneProperties() {
+        Map<String, String> properties = new HashMap<>();
+        properties.put("javax.persistence.nonJtaDataSource", "");
+        properties.put("javax.persistence.schema-generation.database.action", "none");
+        return properties;
     }
 
     //****** METHODS *****//
     //****** DISTANCE *****//
     /**
-     * Looks for all alerts order by distance
+     * Looks for a page of active alerts order by distance. The page is
+     * answered from the in-memory spatial index, the calcDistancePage
+     * procedure is only used if the index could not be loaded.
      *
      * @param latitude north south position
      * @param longitude east west position
+     * @param first position of the first alert of the page
+     * @param max maximum number of alerts in the page
      * @return list of distances or null in case of error.
      */
-    public List<Distance> findAlertsByCoordinates(Double latitude, Double longitude) {
+    public List<Distance> findAlertsByCoordinates(double latitude, double longitude, int first, int max) {
+        return findAlertsByCoordinates(latitude, longitude, Double.POSITIVE_INFINITY, first, max);
+    }
+
+    /**
+     * Looks for a page of active alerts within a radius order by distance.
+     * The alerts that can be in the page are cached by geohash tile and
+     * ranked by distance to the given position. They are read from the
+     * in-memory spatial index, the calcDistanceRadiusPage procedure is only
+     * used, without cache, if the index could not be loaded.
+     *
+     * @param latitude north south position
+     * @param longitude east west position
+     * @param radius maximum distance in km, infinite for no limit
+     * @param first position of the first alert of the page
+     * @param max maximum number of alerts in the page
+     * @return list of distances or null in case of error.
+     */
+    public List<Distance> findAlertsByCoordinates(double latitude, double longitude, double radius,
+            int first, int max) {
         List<Distance> found;
-        found = dDao.selectWhereDistance(latitude, longitude);
+        SpatialIndex index = getAlertIndex();
+        if (index != null) {
+            found = distanceCache.nearest(index, latitude, longitude, radius, first, max);
+        } else if (Double.isInfinite(radius)) {
+            found = dDao.selectWhereDistance(latitude, longitude, first, max);
+        } else {
+            found = dDao.selectWhereDistance(latitude, longitude, radius, first, max);
+        }
         return found;
     }
 
+    /**
+     * Gets the statistics of the nearest alert pages cache.
+     *
+     * @return cache statistics
+     */
+    public CacheStatistics findDistanceCacheStatistics() {
+        return distanceCache.getStatistics();
+    }
+
+    /**
+     * Gets the spatial index of active alerts, loading it from database the
+     * first time.
+     *
+     * @return the index or null in case of error.
+     */
+    private SpatialIndex getAlertIndex() {
+        SpatialIndex index = alertIndex;
+        if (index == null) {
+            synchronized (indexLock) {
+                index = alertIndex;
+                if (index == null) {
+                    EntityManager em = emf.createEntityManager();
+                    try {
+                        Query query = em.createNamedQuery("Alert.findActiveCoordinates");
+                        List<Object[]> rows = query.getResultList();
+                        index = new SpatialIndex();
+                        for (Object[] row : rows) {
+                            index.put((Integer) row[0], ((BigDecimal) row[1]).doubleValue(),
+                                    ((BigDecimal) row[2]).doubleValue());
+                        }
+                        alertIndex = index;
+                    } catch (PersistenceException ex) {
+                        index = null;
+                        logger.getLogger().log(Level.SEVERE, ex.getMessage());
+                    } finally {
+                        em.close();
+                    }
+                }
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Keeps the spatial index and the nearest alert pages in sync with an
+     * alert written in database.
+     *
+     * @param alert alert added, modified or finished.
+     */
+    private void indexAlert(Alert alert) {
+        if (alert.getId() != null) {
+            synchronized (indexLock) {
+                SpatialIndex index = alertIndex;
+                Coordinate c = alert.getCoordId();
+                double[] position = null;
+                if (alert.getActive() && c != null && c.getLatitude() != null
+                        && c.getLongitude() != null) {
+                    position = new double[]{c.getLatitude().doubleValue(),
+                        c.getLongitude().doubleValue()};
+                }
+                if (index != null) {
+                    double[] previous = index.position(alert.getId());
+                    if (position != null) {
+                        index.put(alert.getId(), position[0], position[1]);
+                    } else {
+                        index.remove(alert.getId());
+                    }
+                    distanceCache.invalidate(alert.getId(), previous, position);
+                } else {
+                    //the previous position is unknown without the index
+                    distanceCache.clear();
+                }
+            }
+        }
+    }
+
+    //****** MODERATION *****//
+    /**
+     * Gets the moderation queue of reported alerts, loading the report
+     * numbers from database the first time.
+     *
+     * @return the queue or null in case of error.
+     */
+    private ModerationQueue getModerationQueue() {
+        ModerationQueue queue = moderationQueue;
+        if (queue == null) {
+            synchronized (flushLock) { //no flush changes the counts while loading
+                queue = moderationQueue;
+                if (queue == null) {
+                    EntityManager em = emf.createEntityManager();
+                    try {
+                        Query query = em.createNamedQuery("Alert.findReportedCounts");
+                        List<Object[]> rows = query.getResultList();
+                        queue = new ModerationQueue();
+                        for (Object[] row : rows) {
+                            queue.set((Integer) row[0], (Integer) row[1], true);
+                        }
+                        moderationQueue = queue;
+                    } catch (PersistenceException ex) {
+                        queue = null;
+                        logger.getLogger().log(Level.SEVERE, ex.getMessage());
+                    } finally {
+                        em.close();
+                    }
+                }
+            }
+        }
+        return queue;
+    }
+
+    /**
+     * Keeps the moderation queue in sync with an alert written in database.
+     *
+     * @param alert alert added, modified or finished.
+     */
+    private void trackReports(Alert alert) {
+        synchronized (flushLock) { //not lost if the queue is being loaded
+            ModerationQueue queue = moderationQueue;
+            if (queue != null && alert.getId() != null) {
+                int reports = alert.getReportNumber() != null ? alert.getReportNumber() : 0;
+                queue.set(alert.getId(), reports, alert.getActive());
+            }
+        }
+    }
+
     //****** ALERTS *****//
     /**
      * Looks for all alerts in the datebase.
@@ -60,12 +300,15 @@ public class Model {
      */
     public List<Alert> findAllAlerts() {
         List<Alert> alerts;
+        EntityManager em = emf.createEntityManager();
         try {
             Query query = em.createNamedQuery("Alert.findAll");
             alerts = query.getResultList();
         } catch (PersistenceException ex) {
             alerts = null;
             logger.getLogger().log(Level.SEVERE, ex.getMessage());
+        } finally {
+            em.close();
         }
         return alerts;
     }
@@ -78,69 +321,162 @@ public class Model {
      */
     public Alert findAlertById(int id) {
         Alert alert;
+        EntityManager em = emf.createEntityManager();
         try {
-            Query query = em.createNamedQuery("Alert.findById");
-            query.setParameter("id", id);
-            alert = (Alert) query.getSingleResult();
+            countLookup(alertCounter, Alert.class, id);
+            alert = withPendingReports(em.find(Alert.class, id)); //checks the shared cache first
         } catch (NumberFormatException | PersistenceException ex) {
             alert = null;
             logger.getLogger().log(Level.SEVERE, ex.getMessage());
+        } finally {
+            em.close();
         }
         return alert;
     }
 
     /**
-     * Looks for alerts by animal kind in the database.
+     * Looks for the alerts with the given ids. Alerts in the shared cache are
+     * taken from it, the rest are searched in a single query.
+     *
+     * @param ids primary keys to search, in the order of the result.
+     * @return list of the alerts found in the order of the ids, or null in
+     * case of error.
+     */
+    public List<Alert> findAlertsByIds(List<Integer> ids) {
+        List<Alert> alerts = new ArrayList<>(ids.size());
+        if (!ids.isEmpty()) {
+            EntityManager em = emf.createEntityManager();
+            try {
+                Map<Integer, Alert> byId = new HashMap<>();
+                List<Integer> missing = new ArrayList<>();
+                for (Integer id : ids) {
+                    if (countLookup(alertCounter, Alert.class, id)) {
+                        byId.put(id, em.find(Alert.class, id));
+                    } else {
+                        missing.add(id);
+                    }
+                }
+                if (!missing.isEmpty()) {
+                    Query query = em.createNamedQuery("Alert.findByIds");
+                    query.setParameter("ids", missing);
+                    List<Alert> found = query.getResultList();
+                    for (Alert alert : found) {
+                        byId.put(alert.getId(), alert);
+                    }
+                }
+                for (Integer id : ids) {
+                    Alert alert = byId.get(id);
+                    if (alert != null) {
+                        alerts.add(withPendingReports(alert));
+                    }
+                }
+            } catch (PersistenceException ex) {
+                alerts = null;
+                logger.getLogger().log(Level.SEVERE, ex.getMessage());
+            } finally {
+                em.close();
+            }
+        }
+        return alerts;
+    }
+
+    /**
+     * Looks for a page of alerts in the database order by id.
+     *
+     * @param first position of the first alert, used when after is null.
+     * @param max maximum number of alerts in the page.
+     * @param after id of the last alert of the previous page, null to page by
+     * position.
+     * @return list of alerts or null in case of error.
+     */
+    public List<Alert> findAllAlerts(int first, int max, Integer after) {
+        List<Alert> alerts;
+        EntityManager em = emf.createEntityManager();
+        try {
+            Query query = createPageQuery(em, "Alert.findAll", first, max, after);
+            alerts = query.getResultList();
+        } catch (PersistenceException ex) {
+            alerts = null;
+            logger.getLogger().log(Level.SEVERE, ex.getMessage());
+        } finally {
+            em.close();
+        }
+        return alerts;
+    }
+
+    /**
+     * Looks for a page of alerts by animal kind in the database.
      *
      * @param kind animal kind to search.
+     * @param first position of the first alert, used when after is null.
+     * @param max maximum number of alerts in the page.
+     * @param after id of the last alert of the previous page, null to page by
+     * position.
      * @return list of alerts or null in case of error.
      */
-    public List<Alert> findAlertsByAnimalKind(String kind) {
+    public List<Alert> findAlertsByAnimalKind(String kind, int first, int max, Integer after) {
         List<Alert> alerts;
+        EntityManager em = emf.createEntityManager();
         try {
-            Query query = em.createNamedQuery("Alert.findByAnimalKind");
+            Query query = createPageQuery(em, "Alert.findByAnimalKind", first, max, after);
             query.setParameter("kind", kind);
             alerts = query.getResultList();
         } catch (PersistenceException ex) {
             alerts = null;
             logger.getLogger().log(Level.SEVERE, ex.getMessage());
+        } finally {
+            em.close();
         }
         return alerts;
     }
 
     /**
-     * Looks for alerts by animal kind and race in the database.
+     * Looks for a page of alerts by animal kind and race in the database.
      *
      * @param kind animal kind to search.
      * @param race animal race to search.
+     * @param first position of the first alert, used when after is null.
+     * @param max maximum number of alerts in the page.
+     * @param after id of the last alert of the previous page, null to page by
+     * position.
      * @return list of alerts or null in case of error.
      */
-    public List<Alert> findAlertsByAnimalKindAndRace(String kind, String race) {
+    public List<Alert> findAlertsByAnimalKindAndRace(String kind, String race, int first, int max,
+            Integer after) {
         List<Alert> alerts;
+        EntityManager em = emf.createEntityManager();
         try {
-            Query query = em.createNamedQuery("Alert.findByAnimalKind_Race");
+            Query query = createPageQuery(em, "Alert.findByAnimalKind_Race", first, max, after);
             query.setParameter("kind", kind);
             query.setParameter("race", race);
             alerts = query.getResultList();
         } catch (PersistenceException ex) {
             alerts = null;
             logger.getLogger().log(Level.SEVERE, ex.getMessage());
+        } finally {
+            em.close();
         }
         return alerts;
     }
 
     /**
-     * Looks for alerts by animal kind, race and sex in the database.
+     * Looks for a page of alerts by animal kind, race and sex in the database.
      *
      * @param kind animal kind to search.
      * @param race animal race to search.
      * @param sex animal sex to search.
+     * @param first position of the first alert, used when after is null.
+     * @param max maximum number of alerts in the page.
+     * @param after id of the last alert of the previous page, null to page by
+     * position.
      * @return list of alerts or null in case of error.
      */
-    public List<Alert> findAlertsByAnimalKindRaceAndSex(String kind, String race, String sex) {
+    public List<Alert> findAlertsByAnimalKindRaceAndSex(String kind, String race, String sex,
+            int first, int max, Integer after) {
         List<Alert> alerts;
+        EntityManager em = emf.createEntityManager();
         try {
-            Query query = em.createNamedQuery("Alert.findByAnimalKind_Race_Sex");
+            Query query = createPageQuery(em, "Alert.findByAnimalKind_Race_Sex", first, max, after);
             query.setParameter("kind", kind);
             query.setParameter("race", race);
             query.setParameter("sex", sex);
@@ -148,27 +484,85 @@ public class Model {
         } catch (PersistenceException ex) {
             alerts = null;
             logger.getLogger().log(Level.SEVERE, ex.getMessage());
+        } finally {
+            em.close();
         }
         return alerts;
     }
 
     /**
-     * Looks for alerts reported 3 or more times.
+     * Looks for a page of alerts reported 3 or more times. The page is read
+     * from the in-memory moderation queue and its alerts are searched by id,
+     * the Alert.findByReportNumber query is only used if the queue could not
+     * be loaded.
      *
+     * @param first position of the first alert.
+     * @param max maximum number of alerts in the page.
      * @return list of alerts or null in case of error.
      */
-    public List<Alert> findAlertsByReport() {
+    public List<Alert> findAlertsByReport(int first, int max) {
         List<Alert> alerts;
+        flushReports(); //the threshold is checked with the buffered reports
+        ModerationQueue queue = getModerationQueue();
+        if (queue != null) {
+            alerts = findAlertsByIds(queue.page(first, max));
+            if (alerts != null) {
+                Iterator<Alert> it = alerts.iterator();
+                while (it.hasNext()) {
+                    Alert alert = it.next();
+                    if (!alert.getActive()) { //finished after its last reports were flushed
+                        queue.remove(alert.getId());
+                        it.remove();
+                    }
+                }
+            }
+        } else {
+            alerts = findAlertsByReportNumber(first, max);
+        }
+        return alerts;
+    }
+
+    private List<Alert> findAlertsByReportNumber(int first, int max) {
+        List<Alert> alerts;
+        EntityManager em = emf.createEntityManager();
         try {
             Query query = em.createNamedQuery("Alert.findByReportNumber");
+            query.setFirstResult(first);
+            query.setMaxResults(max);
             alerts = query.getResultList();
         } catch (PersistenceException ex) {
             alerts = null;
             logger.getLogger().log(Level.SEVERE, ex.getMessage());
+        } finally {
+            em.close();
         }
         return alerts;
     }
 
+    /**
+     * Creates a paged alert query. With a last id it seeks on the id index
+     * (named query with After suffix), otherwise it skips by position.
+     *
+     * @param em entity manager of the operation.
+     * @param name named query ordered by alert id.
+     * @param first position of the first alert, used when after is null.
+     * @param max maximum number of alerts in the page.
+     * @param after id of the last alert of the previous page or null.
+     * @return query ready to receive the filter parameters.
+     */
+    private Query createPageQuery(EntityManager em, String name, int first, int max, Integer after) {
+        Query query;
+        if (after != null) {
+            query = em.createNamedQuery(name + "After");
+            query.setParameter("lastId", after);
+        } else {
+            query = em.createNamedQuery(name);
+            query.setFirstResult(first);
+        }
+        query.setMaxResults(max);
+        return query;
+    }
+
     /**
      * Adds an alert in database.
      *
@@ -178,6 +572,7 @@ public class Model {
      */
     public int addAlert(Alert a) {
         int result;
+        EntityManager em = emf.createEntityManager();
         EntityTransaction tx = em.getTransaction();
         try {
             tx.begin();
@@ -186,18 +581,105 @@ public class Model {
                 a.setUserId(toFind);
                 em.persist(a);
                 tx.commit();
+                indexAlert(a);
+                trackReports(a);
+                scaleImage(a.getAnimalId());
                 result = 1;
             } else {
                 result = 0;
             }
         } catch (PersistenceException | DatabaseException ex) {
-            tx.rollback();
+            rollback(tx);
             result = -1;
             logger.getLogger().log(Level.SEVERE, ex.getMessage());
+        } finally {
+            em.close();
         }
         return result;
     }
 
+    /**
+     * Adds a chunk of alerts of an user in a single transaction with JDBC
+     * batches. Invalid alerts are skipped, if the database fails none of the
+     * chunk is added. Added alerts are indexed and their images scaled.
+     *
+     * @param alerts alerts to add, the ids are set in them.
+     * @param userId owner of the alerts.
+     * @param firstIndex position of the first alert in the request.
+     * @return result of each alert. Code: 1 added, -1 invalid alert, -2
+     * database error.
+     */
+    public List<ItemResult> addAlerts(List<Alert> alerts, int userId, int firstIndex) {
+        List<ItemResult> results = new ArrayList<>(alerts.size());
+        List<Alert> valid = new ArrayList<>(alerts.size());
+        for (int i = 0; i < alerts.size(); i++) {
+            Alert a = alerts.get(i);
+            String error = checkAlert(a);
+            if (error == null) {
+                a.getAnimalId().setImage(a.getAnimalId().getImage()); //hash from the bytes sent
+                a.setActive(true);
+                a.setReportNumber(0);
+                if (a.getCreationDate() == 0) {
+                    a.setCreationDate(System.currentTimeMillis());
+                }
+                valid.add(a);
+                results.add(null); //set once the chunk is saved
+            } else {
+                results.add(new ItemResult(firstIndex + i, null, -1, error));
+            }
+        }
+        if (!valid.isEmpty()) {
+            boolean saved = aDao.insertAlerts(valid, userId) == valid.size();
+            for (int i = 0; i < alerts.size(); i++) {
+                if (results.get(i) == null) {
+                    Alert a = alerts.get(i);
+                    if (saved) {
+                        indexAlert(a);
+                        scaleImage(a.getAnimalId());
+                        results.set(i, new ItemResult(firstIndex + i, a.getId(), 1, "Alert added"));
+                    } else {
+                        results.set(i, new ItemResult(firstIndex + i, null, -2, "Database error"));
+                    }
+                }
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Checks the fields of an alert sent by a client with the constraints of
+     * the tables.
+     *
+     * @param a alert to check.
+     * @return error message or null if the alert is valid.
+     */
+    private String checkAlert(Alert a) {
+        String error = null;
+        Animal animal = a != null ? a.getAnimalId() : null;
+        Coordinate c = a != null ? a.getCoordId() : null;
+        Description d = a != null ? a.getDescId() : null;
+        if (a == null || animal == null || c == null || d == null) {
+            error = "Alert, animal, coordinate and description are required";
+        } else if (c.getLatitude() == null || c.getLongitude() == null
+                || Math.abs(c.getLatitude().doubleValue()) > 90
+                || Math.abs(c.getLongitude().doubleValue()) > 180) {
+            error = "Invalid coordinate";
+        } else if (!ANIMAL_KINDS.contains(animal.getKind()) || !ANIMAL_SEXES.contains(animal.getSex())
+                || !hasLength(animal.getHairColor(), 50)
+                || (animal.getName() != null && animal.getName().length() > 50)
+                || (animal.getRace() != null && animal.getRace().length() > 50)) {
+            error = "Invalid animal";
+        } else if (!hasLength(d.getTitle(), 100) || !hasLength(d.getDescription(), 500)
+                || (d.getPhone() != null && d.getPhone().length() > 50)) {
+            error = "Invalid description";
+        }
+        return error;
+    }
+
+    private boolean hasLength(String value, int max) {
+        return value != null && !value.isEmpty() && value.length() <= max;
+    }
+
     /**
      * Modify an alert in database.
      *
@@ -206,6 +688,7 @@ public class Model {
      */
     public int modifyAlert(Alert update) {
         int result;
+        EntityManager em = emf.createEntityManager();
         EntityTransaction tx = em.getTransaction();
         try {
             Alert toModify = em.find(Alert.class, update.getId());
@@ -217,7 +700,7 @@ public class Model {
 
             Coordinate c = em.getReference(Coordinate.class, update.getCoordId().getId());
             c.setLatitude(update.getCoordId().getLatitude());
-            c.setLatitude(update.getCoordId().getLatitude());
+            c.setLongitude(update.getCoordId().getLongitude());
             toModify.setCoordId(c);
 
             Animal a = em.getReference(Animal.class, update.getAnimalId().getId());
@@ -229,7 +712,11 @@ public class Model {
             a.setHalfBlood(update.getAnimalId().getHalfBlood());
             a.setAge(update.getAnimalId().getAge());
             a.setSex(update.getAnimalId().getSex());
-            a.setImage(update.getAnimalId().getImage());
+            //the image is not in the Json responses, keep it unless a new one is sent
+            boolean newImage = update.getAnimalId().getImage() != null;
+            if (newImage) {
+                a.setImage(update.getAnimalId().getImage());
+            }
             toModify.setAnimalId(a);
 
             Description d = em.getReference(Description.class, update.getDescId().getId());
@@ -239,18 +726,103 @@ public class Model {
             d.setPhone(update.getDescId().getPhone());
             toModify.setDescId(d);
 
-            em.merge(toModify);
+            Alert merged = em.merge(toModify);
             tx.commit();
+            indexAlert(merged);
+            trackReports(merged);
+            if (newImage) {
+                imageCache.remove(a.getId());
+                scaleImage(a);
+            }
             result = 1;
         } catch (PersistenceException | DatabaseException ex) {
-            tx.rollback();
+            rollback(tx);
             result = -1;
-            System.out.println(ex.getMessage());
             logger.getLogger().log(Level.SEVERE, ex.getMessage());
+        } finally {
+            em.close();
         }
         return result;
     }
 
+    /**
+     * Changes only the given fields of an alert, its animal, description and
+     * coordinate with a single UPDATE. The alert is read before, usually from
+     * the shared cache, to evict the changed entities and keep the spatial
+     * index and the moderation queue in sync.
+     *
+     * @param id alert to change.
+     * @param patch fields to change, the null ones are not changed.
+     * @return 1 if alert changed successfully, 0 if there is nothing to
+     * change, -2 if the alert is not found, -3 if a value is not valid, -1 in
+     * case of error.
+     */
+    public int patchAlert(int id, AlertPatch patch) {
+        int result;
+        EntityManager em = emf.createEntityManager();
+        try {
+            Alert current = em.find(Alert.class, id);
+            if (current == null) {
+                result = -2;
+            } else if (patch.isEmpty()) {
+                result = 0;
+            } else if (checkPatch(patch) != null) {
+                result = -3;
+            } else {
+                Coordinate c = current.getCoordId();
+                Coordinate moved = new Coordinate(c.getId(),
+                        patch.getLatitude() != null ? patch.getLatitude() : c.getLatitude(),
+                        patch.getLongitude() != null ? patch.getLongitude() : c.getLongitude());
+                int animalId = current.getAnimalId().getId();
+                int descId = current.getDescId().getId();
+                result = aDao.patchAlert(id, patch) == 1 ? 1 : -1;
+                if (result == 1) {
+                    evict(Alert.class, id);
+                    evict(Animal.class, animalId);
+                    evict(Description.class, descId);
+                    evict(Coordinate.class, moved.getId());
+                    Alert changed = new Alert(id, current.getCreationDate(),
+                            patch.getActive() != null ? patch.getActive() : current.getActive());
+                    changed.setCoordId(moved);
+                    changed.setReportNumber(current.getReportNumber());
+                    indexAlert(changed);
+                    trackReports(changed);
+                }
+            }
+        } catch (PersistenceException ex) {
+            result = -1;
+            logger.getLogger().log(Level.SEVERE, ex.getMessage());
+        } finally {
+            em.close();
+        }
+        return result;
+    }
+
+    /**
+     * Checks the fields of a patch with the constraints of the tables.
+     *
+     * @param patch fields to change.
+     * @return error message or null if the values are valid.
+     */
+    private String checkPatch(AlertPatch patch) {
+        String error = null;
+        if ((patch.getLatitude() != null && Math.abs(patch.getLatitude().doubleValue()) > 90)
+                || (patch.getLongitude() != null && Math.abs(patch.getLongitude().doubleValue()) > 180)) {
+            error = "Invalid coordinate";
+        } else if ((patch.getName() != null && !hasLength(patch.getName(), 50))
+                || (patch.getKind() != null && !ANIMAL_KINDS.contains(patch.getKind()))
+                || (patch.getHairColor() != null && !hasLength(patch.getHairColor(), 50))
+                || (patch.getSex() != null && !ANIMAL_SEXES.contains(patch.getSex()))
+                || (patch.getRace() != null && patch.getRace().length() > 50)) {
+            error = "Invalid animal";
+        } else if ((patch.getTitle() != null && !hasLength(patch.getTitle(), 100))
+                || (patch.getDescription() != null && !hasLength(patch.getDescription(), 500))
+                || (patch.getPhone() != null && !hasLength(patch.getPhone(), 50))) {
+            error = "Invalid description";
+        }
+        return error;
+    }
+
     /**
      * Mark the alert as finished.
      *
@@ -259,42 +831,240 @@ public class Model {
      */
     public int finishAlert(Alert alert) {
         int result;
+        EntityManager em = emf.createEntityManager();
         EntityTransaction tx = em.getTransaction();
         try {
             tx.begin();
-            alert.setActive(false);
+            Alert toFinish = em.find(Alert.class, alert.getId());
+            toFinish.setActive(false);
             tx.commit();
+            alert.setActive(false);
+            indexAlert(toFinish);
+            trackReports(toFinish);
             result = 1;
         } catch (PersistenceException | DatabaseException ex) {
-            tx.rollback();
+            rollback(tx);
             result = -1;
             logger.getLogger().log(Level.SEVERE, ex.getMessage());
+        } finally {
+            em.close();
         }
         return result;
     }
 
     /**
-     * Report an alert.
+     * Report an alert. The report is checked with one read and buffered, it
+     * is saved with the other reports of the next flush, and each user can
+     * only report an alert once.
      *
-     * @param alert to report.
-     * @return 1 if alert reported successfully, -1 in case of error.
+     * @param alertId alert to report.
+     * @param userId user reporting the alert.
+     * @return 1 if alert reported successfully, 0 if the user already
+     * reported it, -2 if the alert is not found or finished, -1 in case of
+     * error.
      */
-    public int reportAlert(Alert alert) {
-        int result;
+    public int reportAlert(int alertId, int userId) {
+        int result = aDao.checkReport(alertId, userId);
+        if (result == 1 && !reportBuffer.add(alertId, userId)) {
+            result = 0; //already pending
+        }
+        return result;
+    }
+
+    /**
+     * Saves the buffered reports in database. Run periodically and before
+     * reading the reported alerts.
+     */
+    private void flushReports() {
+        synchronized (flushLock) {
+            long[] reports = reportBuffer.drain();
+            if (reports.length > 0) {
+                Map<Integer, Integer> changed = aDao.flushReports(reports);
+                if (changed != null) {
+                    ModerationQueue queue = moderationQueue;
+                    for (Map.Entry<Integer, Integer> e : changed.entrySet()) {
+                        evict(Alert.class, e.getKey()); //the cached report number is old
+                        if (queue != null) { //0 if the alert is finished, then it leaves the queue
+                            queue.set(e.getKey(), e.getValue(), e.getValue() > 0);
+                        }
+                    }
+                    reportBuffer.flushed(reports);
+                } else {
+                    reportBuffer.restore(reports); //tried again in the next flush
+                    logger.getLogger().log(Level.WARNING, "Reports not saved: " + reports.length);
+                }
+            }
+        }
+    }
+
+    /**
+     * Stops the background tasks, saving the buffered reports and waiting for
+     * the renditions being scaled, and closes the entity manager factory.
+     * Called when the application stops.
+     */
+    public void close() {
+        reportFlusher.shutdown();
+        flushReports(); //waits for a running flush
+        renditionExecutor.shutdown();
+        try {
+            if (!renditionExecutor.awaitTermination(30, TimeUnit.SECONDS)) {
+                logger.getLogger().log(Level.WARNING, "Renditions not finished");
+                renditionExecutor.shutdownNow();
+            }
+        } catch (InterruptedException ex) {
+            renditionExecutor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+        emf.close();
+    }
+
+    /**
+     * Adds the buffered reports of an alert to its report number.
+     *
+     * @param alert alert read from database, can be null.
+     * @return the same alert.
+     */
+    private Alert withPendingReports(Alert alert) {
+        if (alert != null && alert.getId() != null) {
+            long pending = reportBuffer.pending(alert.getId());
+            if (pending > 0) {
+                int reports = alert.getReportNumber() != null ? alert.getReportNumber() : 0;
+                alert.setReportNumber(reports + (int) pending);
+            }
+        }
+        return alert;
+    }
+
+    //****** ANIMALS ******//
+    /**
+     * Looks for the image of an animal, first in the image cache and then in
+     * the database. If a rendition is not scaled yet the original image is
+     * returned.
+     *
+     * @param id animal primary key.
+     * @param rendition image size.
+     * @return image, null if the animal has no image or in case of error.
+     */
+    public Image findAnimalImage(int id, Rendition rendition) {
+        Image image = imageCache.get(id, rendition);
+        if (image == null) {
+            Rendition requested = rendition;
+            EntityManager em = emf.createEntityManager();
+            try {
+                Object[] row = findImageRow(em, id, rendition);
+                if (row[0] == null && rendition != Rendition.ORIGINAL) {
+                    //not scaled yet, the original is served meanwhile and it is
+                    //read to scale it unless that is already being done
+                    rendition = Rendition.ORIGINAL;
+                    image = missingRenditions.contains(id) ? imageCache.get(id, rendition) : null;
+                    row = image == null ? findImageRow(em, id, rendition) : null;
+                }
+                if (row != null && row[0] != null) {
+                    byte[] bytes = (byte[]) row[0];
+                    if (rendition != requested && row[1] != null) {
+                        scaleMissing(id, bytes, (String) row[1]);
+                    }
+                    String hash = row[1] != null ? (String) row[1] : Hash.md5(bytes);
+                    if (rendition != Rendition.ORIGINAL) {
+                        hash += "-" + rendition.name().toLowerCase();
+                    }
+                    image = new Image(hash, bytes);
+                    imageCache.put(id, rendition, image);
+                }
+            } catch (PersistenceException ex) {
+                image = null;
+                logger.getLogger().log(Level.SEVERE, ex.getMessage());
+            } finally {
+                em.close();
+            }
+        }
+        return image;
+    }
+
+    private Object[] findImageRow(EntityManager em, int id, Rendition rendition) {
+        String name;
+        switch (rendition) {
+            case THUMBNAIL:
+                name = "Animal.findThumbnail";
+                break;
+            case MEDIUM:
+                name = "Animal.findMedium";
+                break;
+            default:
+                name = "Animal.findImage";
+        }
+        Query query = em.createNamedQuery(name);
+        query.setParameter("id", id);
+        return (Object[]) query.getSingleResult();
+    }
+
+    /**
+     * Scales the image of an animal in background and saves its renditions.
+     * The renditions are only saved if the image has not changed meanwhile.
+     *
+     * @param animal animal with the image just saved, nothing is done if it
+     * is null or has no image.
+     */
+    private void scaleImage(Animal animal) {
+        if (animal != null && animal.getImage() != null && animal.getId() != null) {
+            final int id = animal.getId();
+            final byte[] image = animal.getImage();
+            final String hash = animal.getImageHash();
+            try {
+                renditionExecutor.execute(() -> saveRenditions(id, image, hash));
+            } catch (RejectedExecutionException ex) {
+                logger.getLogger().log(Level.WARNING, ex.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Scales in background an image saved without renditions, once while it
+     * is being scaled.
+     */
+    private void scaleMissing(final int id, final byte[] image, final String hash) {
+        if (missingRenditions.add(id)) {
+            try {
+                renditionExecutor.execute(() -> {
+                    try {
+                        saveRenditions(id, image, hash);
+                    } finally {
+                        missingRenditions.remove(id);
+                    }
+                });
+            } catch (RejectedExecutionException ex) {
+                missingRenditions.remove(id);
+                logger.getLogger().log(Level.WARNING, ex.getMessage());
+            }
+        }
+    }
+
+    private void saveRenditions(int id, byte[] image, String hash) {
+        EntityManager em = emf.createEntityManager();
         EntityTransaction tx = em.getTransaction();
         try {
+            //an image already small, or that can not be scaled, is its own rendition,
+            //so the requests of the rendition do not fall back to the original every time
+            byte[] thumbnail = ImageScaler.scale(image, Rendition.THUMBNAIL);
+            byte[] medium = ImageScaler.scale(image, Rendition.MEDIUM);
+            thumbnail = thumbnail != null ? thumbnail : image;
+            medium = medium != null ? medium : image;
             tx.begin();
-            int reportNum = alert.getReportNumber();
-            reportNum++;
-            alert.setReportNumber(reportNum);
+            Query query = em.createNamedQuery("Animal.updateRenditions");
+            query.setParameter("thumbnail", thumbnail);
+            query.setParameter("medium", medium);
+            query.setParameter("id", id);
+            query.setParameter("imageHash", hash);
+            query.executeUpdate();
             tx.commit();
-            result = 1;
-        } catch (PersistenceException | DatabaseException ex) {
-            tx.rollback();
-            result = -1;
+            evict(Animal.class, id); //bulk updates skip the shared cache
+            imageCache.remove(id);
+        } catch (IOException | RuntimeException ex) {
+            rollback(tx);
             logger.getLogger().log(Level.SEVERE, ex.getMessage());
+        } finally {
+            em.close();
         }
-        return result;
     }
 
     //****** COORDINATES ******//
@@ -306,6 +1076,7 @@ public class Model {
      */
     public int addCoordinate(Coordinate coordinate) {
         int result;
+        EntityManager em = emf.createEntityManager();
         EntityTransaction tx = em.getTransaction();
         try {
             tx.begin();
@@ -313,9 +1084,11 @@ public class Model {
             tx.commit();
             result = 1;
         } catch (PersistenceException | DatabaseException ex) {
-            tx.rollback();
+            rollback(tx);
             result = -1;
             logger.getLogger().log(Level.SEVERE, ex.getMessage());
+        } finally {
+            em.close();
         }
         return result;
     }
@@ -328,12 +1101,15 @@ public class Model {
      */
     public List<User> findAllUsers() {
         List<User> users;
+        EntityManager em = emf.createEntityManager();
         try {
             Query query = em.createNamedQuery("User.findAll");
             users = query.getResultList();
         } catch (PersistenceException ex) {
             users = null;
             logger.getLogger().log(Level.SEVERE, ex.getMessage());
+        } finally {
+            em.close();
         }
         return users;
     }
@@ -346,13 +1122,15 @@ public class Model {
      */
     public User findUserById(int id) {
         User user;
+        EntityManager em = emf.createEntityManager();
         try {
-            Query query = em.createNamedQuery("User.findById");
-            query.setParameter("id", id);
-            user = (User) query.getSingleResult();
+            countLookup(userCounter, User.class, id);
+            user = em.find(User.class, id); //checks the shared cache first
         } catch (NumberFormatException | PersistenceException ex) {
             user = null;
             logger.getLogger().log(Level.SEVERE, ex.getMessage());
+        } finally {
+            em.close();
         }
         return user;
     }
@@ -365,6 +1143,7 @@ public class Model {
      */
     public User findUserByMail(String mail){
         User user;
+        EntityManager em = emf.createEntityManager();
         try {
             Query query = em.createNamedQuery("User.findByMail");
             query.setParameter("mail", mail);
@@ -372,6 +1151,8 @@ public class Model {
         } catch (NumberFormatException | PersistenceException ex) {
             user = null;
             logger.getLogger().log(Level.SEVERE, ex.getMessage());
+        } finally {
+            em.close();
         }
         return user;
     }
@@ -384,6 +1165,7 @@ public class Model {
      */
     public User findUserByToken(String token) {
         User user;
+        EntityManager em = emf.createEntityManager();
         try {
             Query query = em.createNamedQuery("User.findByToken");
             query.setParameter("token", token);
@@ -391,10 +1173,32 @@ public class Model {
         } catch (NumberFormatException | PersistenceException ex) {
             user = null;
             logger.getLogger().log(Level.SEVERE, ex.getMessage());
+        } finally {
+            em.close();
         }
         return user;
     }
 
+    /**
+     * Looks for a token, first in the token cache and then in the database.
+     *
+     * @param token to search.
+     * @return token with user id and expiration or null if no user has it.
+     */
+    public AuthToken findToken(String token) {
+        AuthToken found = tokenCache.get(token);
+        if (found == null) {
+            User user = findUserByToken(token);
+            if (user != null && token.equals(user.getToken())) {
+                found = new AuthToken(user.getToken(), user.getUsername(),
+                        user.getExpiration(), user.getSourceIP());
+                found.setUserId(user.getId());
+                tokenCache.put(found);
+            }
+        }
+        return found;
+    }
+
     /**
      * Looks for an user by username in the database.
      *
@@ -403,6 +1207,7 @@ public class Model {
      */
     public User findUserByUsername(String username) {
         User user;
+        EntityManager em = emf.createEntityManager();
         try {
             Query query = em.createNamedQuery("User.findByUsername");
             query.setParameter("username", username);
@@ -410,6 +1215,8 @@ public class Model {
         } catch (PersistenceException ex) {
             user = null;
             logger.getLogger().log(Level.SEVERE, ex.getMessage());
+        } finally {
+            em.close();
         }
         return user;
     }
@@ -422,6 +1229,7 @@ public class Model {
      */
     public int addUser(User user) {
         int result;
+        EntityManager em = emf.createEntityManager();
         EntityTransaction tx = em.getTransaction();
         try {
             tx.begin();
@@ -430,8 +1238,10 @@ public class Model {
             result = 1;
         } catch (PersistenceException | DatabaseException ex) {
             result = -1;
-            tx.rollback();
+            rollback(tx);
             logger.getLogger().log(Level.SEVERE, ex.getMessage());
+        } finally {
+            em.close();
         }
         return result;
     }
@@ -444,6 +1254,7 @@ public class Model {
      */
     public int modifyUser(User update) {
         int result;
+        EntityManager em = emf.createEntityManager();
         EntityTransaction tx = em.getTransaction();
         try {
             User toModify = em.find(User.class, update.getId());
@@ -457,8 +1268,10 @@ public class Model {
             result = 1;
         } catch (PersistenceException | DatabaseException ex) {
             result = -1;
-            tx.rollback();
+            rollback(tx);
             logger.getLogger().log(Level.SEVERE, ex.getMessage());
+        } finally {
+            em.close();
         }
         return result;
     }
@@ -472,6 +1285,7 @@ public class Model {
      */
     public int modifyUserPassword(User update, String password) {
         int result;
+        EntityManager em = emf.createEntityManager();
         EntityTransaction tx = em.getTransaction();
         try {
             User toModify = em.find(User.class, update.getId());
@@ -483,8 +1297,10 @@ public class Model {
             result = 1;
         } catch (PersistenceException | DatabaseException ex) {
             result = -1;
-            tx.rollback();
+            rollback(tx);
             logger.getLogger().log(Level.SEVERE, ex.getMessage());
+        } finally {
+            em.close();
         }
         return result;
     }
@@ -497,6 +1313,7 @@ public class Model {
      */
     public int blockUser(User update) {
         int result;
+        EntityManager em = emf.createEntityManager();
         EntityTransaction tx = em.getTransaction();
         try {
             User toModify = em.find(User.class, update.getId());
@@ -505,11 +1322,14 @@ public class Model {
             toModify.setActive(false);
             em.merge(toModify);
             tx.commit();
+            tokenCache.removeUser(update.getId());
             result = 1;
         } catch (PersistenceException | DatabaseException ex) {
             result = -1;
-            tx.rollback();
+            rollback(tx);
             logger.getLogger().log(Level.SEVERE, ex.getMessage());
+        } finally {
+            em.close();
         }
         return result;
     }
@@ -522,12 +1342,15 @@ public class Model {
      */
     public List<Message> findAllMessages() {
         List<Message> messages;
+        EntityManager em = emf.createEntityManager();
         try {
             Query query = em.createNamedQuery("Message.findAll");
             messages = query.getResultList();
         } catch (PersistenceException ex) {
             messages = null;
             logger.getLogger().log(Level.SEVERE, ex.getMessage());
+        } finally {
+            em.close();
         }
         return messages;
     }
@@ -540,6 +1363,7 @@ public class Model {
      */
     public Message findMessage(int id) {
         Message message;
+        EntityManager em = emf.createEntityManager();
         try {
             Query query = em.createNamedQuery("Message.findById");
             query.setParameter("id", id);
@@ -547,6 +1371,8 @@ public class Model {
         } catch (PersistenceException ex) {
             message = null;
             logger.getLogger().log(Level.SEVERE, ex.getMessage());
+        } finally {
+            em.close();
         }
         return message;
     }
@@ -559,6 +1385,7 @@ public class Model {
      */
     public List<Message> findUserMessagesSent(int id) {
         List<Message> messages;
+        EntityManager em = emf.createEntityManager();
         try {
             Query query = em.createNamedQuery("Message.findByUserSent");
             query.setParameter("id", id);
@@ -566,6 +1393,8 @@ public class Model {
         } catch (PersistenceException ex) {
             messages = null;
             logger.getLogger().log(Level.SEVERE, ex.getMessage());
+        } finally {
+            em.close();
         }
         return messages;
     }
@@ -578,6 +1407,7 @@ public class Model {
      */
     public List<Message> findUserMessagesReceived(int id) {
         List<Message> messages;
+        EntityManager em = emf.createEntityManager();
         try {
             Query query = em.createNamedQuery("Message.findByUserReceived");
             query.setParameter("id", id);
@@ -585,6 +1415,8 @@ public class Model {
         } catch (PersistenceException ex) {
             messages = null;
             logger.getLogger().log(Level.SEVERE, ex.getMessage());
+        } finally {
+            em.close();
         }
         return messages;
     }
@@ -597,6 +1429,7 @@ public class Model {
      */
     public int addMessage(Message message) {
         int result;
+        EntityManager em = emf.createEntityManager();
         EntityTransaction tx = em.getTransaction();
         try {
             tx.begin();
@@ -604,9 +1437,11 @@ public class Model {
             tx.commit();
             result = 1;
         } catch (DatabaseException | PersistenceException ex) {
-            tx.rollback();
+            rollback(tx);
             result = -1;
             logger.getLogger().log(Level.SEVERE, ex.getMessage());
+        } finally {
+            em.close();
         }
         return result;
     }
@@ -620,23 +1455,29 @@ public class Model {
      */
     public int hideMessage(Message message, String who) {
         int result;
+        EntityManager em = emf.createEntityManager();
         EntityTransaction tx = em.getTransaction();
         try {
             tx.begin();
+            Message toHide = em.find(Message.class, message.getId());
             switch (who) {
                 case "sent":
+                    toHide.setSenderActive(false);
                     message.setSenderActive(false);
                     break;
                 case "received":
+                    toHide.setReceiverActive(false);
                     message.setReceiverActive(false);
                     break;
             }
             tx.commit();
             result = 1;
         } catch (DatabaseException | PersistenceException ex) {
-            tx.rollback();
+            rollback(tx);
             result = -1;
             logger.getLogger().log(Level.SEVERE, ex.getMessage());
+        } finally {
+            em.close();
         }
         return result;
     }
@@ -651,18 +1492,28 @@ public class Model {
      */
     public int addToken(User user, AuthToken token) {
         int result;
+        EntityManager em = emf.createEntityManager();
         EntityTransaction tx = em.getTransaction();
         try {
             tx.begin();
+            User toModify = em.find(User.class, user.getId());
+            toModify.setToken(token.getToken());
+            toModify.setExpiration(token.getExpiration());
+            toModify.setSourceIP(token.getSourceIP());
+            tx.commit();
+            tokenCache.removeUser(user.getId());
+            token.setUserId(user.getId());
+            tokenCache.put(token);
             user.setToken(token.getToken());
             user.setExpiration(token.getExpiration());
             user.setSourceIP(token.getSourceIP());
-            tx.commit();
             result = 1;
         } catch (DatabaseException | PersistenceException ex) {
-            tx.rollback();
+            rollback(tx);
             result = -1;
             logger.getLogger().log(Level.SEVERE, ex.getMessage());
+        } finally {
+            em.close();
         }
         return result;
     }
@@ -675,6 +1526,7 @@ public class Model {
      */
     public Date findUserExpiration(String token) {
         Date expiration;
+        EntityManager em = emf.createEntityManager();
         try {
             Query query = em.createNamedQuery("User.findUserExpiration");
             query.setParameter("token", token);
@@ -682,6 +1534,8 @@ public class Model {
         } catch (PersistenceException ex) {
             expiration = null;
             logger.getLogger().log(Level.SEVERE, ex.getMessage());
+        } finally {
+            em.close();
         }
         return expiration;
     }
@@ -693,12 +1547,15 @@ public class Model {
      */
     public List<String> findAllTokens() {
         List<String> tokens;
+        EntityManager em = emf.createEntityManager();
         try {
             Query query = em.createNamedQuery("User.findAllTokens");
             tokens = query.getResultList();
         } catch (PersistenceException ex) {
             tokens = null;
             logger.getLogger().log(Level.SEVERE, ex.getMessage());
+        } finally {
+            em.close();
         }
         return tokens;
     }
@@ -711,18 +1568,88 @@ public class Model {
      */
     public int removeToken(User user) {
         int result;
+        EntityManager em = emf.createEntityManager();
         EntityTransaction tx = em.getTransaction();
         try {
             tx.begin();
-            user.setToken(null);
+            User toModify = em.find(User.class, user.getId());
+            toModify.setToken(null);
             tx.commit();
+            tokenCache.removeUser(user.getId());
+            user.setToken(null);
             result = 1;
         } catch (DatabaseException | PersistenceException ex) {
-            tx.rollback();
+            rollback(tx);
             result = -1;
             logger.getLogger().log(Level.SEVERE, ex.getMessage());
+        } finally {
+            em.close();
         }
         return result;
     }
 
+    //****** STATISTICS *****//
+    /**
+     * Looks for the statistics of the database connection pool.
+     *
+     * @return pool statistics.
+     */
+    public PoolStatistics findPoolStatistics() {
+        return DbConnect.getInstance().getStatistics();
+    }
+
+    /**
+     * Looks for the statistics of the shared entity cache lookups by primary
+     * key. The number of cached entities is not known.
+     *
+     * @return alerts and users cache statistics.
+     */
+    public List<CacheStatistics> findEntityCacheStatistics() {
+        List<CacheStatistics> stats = new ArrayList<>();
+        stats.add(alertCounter.getStatistics(-1));
+        stats.add(userCounter.getStatistics(-1));
+        return stats;
+    }
+
+    /**
+     * Counts a lookup by primary key as a hit if the entity is in the shared
+     * cache.
+     *
+     * @param counter cache counter of the entity
+     * @param type entity class
+     * @param id primary key
+     * @return true if the entity is cached
+     */
+    private boolean countLookup(CacheCounter counter, Class<?> type, Object id) {
+        boolean cached = emf.getCache().contains(type, id);
+        if (cached) {
+            counter.hit();
+        } else {
+            counter.miss();
+        }
+        return cached;
+    }
+
+    /**
+     * Removes an entity from the shared cache after a write that does not go
+     * through an entity manager merge, like bulk updates or JDBC.
+     *
+     * @param type entity class
+     * @param id primary key
+     */
+    private void evict(Class<?> type, Object id) {
+        emf.getCache().evict(type, id);
+    }
+
+    /**
+     * Rolls back a transaction if it was started.
+     *
+     * @param tx transaction to roll back.
+     */
+    private void rollback(EntityTransaction tx) {
+        if (tx.isActive()) {
+            tx.rollback();
+        }
+    }
+
 }
@@ -0,0 +1,283 @@
+package cat.proven.petAlert.model.geo;
+
+import cat.proven.petAlert.model.CacheCounter;
+import cat.proven.petAlert.model.CacheStatistics;
+import cat.proven.petAlert.model.Distance;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-memory cache of nearest alert candidates by geohash tile. The requests
+ * of a neighbourhood share the entry of their tile: the alerts that can be
+ * in the page for any position of the tile, with their positions. Each
+ * request measures the candidates from its own position and ranks them, so
+ * distances and the radius are exact.
+ *
+ * An alert seen from a position of the tile is at most the spread of the
+ * tile (the distance from the center to a corner) nearer or farther than
+ * from the center, so the k nearest alerts of any position of the tile are
+ * within the distance of the k-th nearest alert of the center plus twice
+ * the spread.
+ *
+ * An entry is invalidated when an alert within that distance of the tile
+ * center is added, moved or finished, or when the entry contains the changed
+ * alert.
+ *
+ * @author Pet Alert
+ */
+public class DistanceCache {
+
+    /* ATTRIBUTES */
+    public static final int PRECISION = 6; //tiles of about 1.2 x 0.6 km
+    private static final int PURGE_SIZE = 10000; //entries before purging
+    private static final double SLACK = 0.001; //km, rounding of the distances
+    private final Map<Key, Entry> entries;
+    private final AtomicLong version; //changes on every invalidation
+    private final CacheCounter counter;
+
+    /* CONSTRUCTORS */
+    public DistanceCache() {
+        entries = new ConcurrentHashMap<>();
+        version = new AtomicLong();
+        counter = new CacheCounter("distances");
+    }
+
+    /* METHODS */
+    /**
+     * Tile of a position.
+     *
+     * @param latitude north south position
+     * @param longitude east west position
+     * @return geohash of the tile
+     */
+    public static String tile(double latitude, double longitude) {
+        return GeoHash.encode(latitude, longitude, PRECISION);
+    }
+
+    /**
+     * Looks for a page of alerts order by distance to the given position,
+     * with the candidates of its tile, loading them from the index if they
+     * are not cached.
+     *
+     * @param index spatial index of the active alerts
+     * @param latitude north south position
+     * @param longitude east west position
+     * @param radius maximum distance in km, infinite for no limit
+     * @param first position of the first alert of the page
+     * @param max maximum number of alerts in the page
+     * @return list of distances, empty if there are no alerts in the page.
+     */
+    public List<Distance> nearest(SpatialIndex index, double latitude, double longitude, double radius,
+            int first, int max) {
+        List<Distance> found = new ArrayList<>();
+        if (first >= 0 && max > 0) {
+            String tile = tile(latitude, longitude);
+            int k = (int) Math.min((long) first + max, Integer.MAX_VALUE);
+            Key key = new Key(tile, radius, k);
+            Entry entry = entries.get(key);
+            if (entry != null) {
+                counter.hit();
+            } else {
+                counter.miss();
+                entry = load(index, key);
+            }
+            found = entry.page(latitude, longitude, radius, first, max);
+        }
+        return found;
+    }
+
+    /**
+     * Removes the entries changed by an alert.
+     *
+     * @param id alert id
+     * @param positions {latitude, longitude} before and after the change, null
+     * if the alert had no position
+     */
+    public void invalidate(int id, double[]... positions) {
+        version.incrementAndGet();
+        Iterator<Entry> it = entries.values().iterator();
+        while (it.hasNext()) {
+            if (it.next().isChangedBy(id, positions)) {
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * Removes all the entries.
+     */
+    public void clear() {
+        version.incrementAndGet();
+        entries.clear();
+    }
+
+    /**
+     * Hits, misses and cached tiles.
+     *
+     * @return cache statistics
+     */
+    public CacheStatistics getStatistics() {
+        return counter.getStatistics(entries.size());
+    }
+
+    /**
+     * Reads the candidates of a tile from the index and caches them. They are
+     * not cached if an alert changed meanwhile, because they may have been
+     * read before the change.
+     *
+     * @param index spatial index of the active alerts
+     * @param key tile, radius and number of alerts of the page
+     * @return candidates of the tile
+     */
+    private Entry load(SpatialIndex index, Key key) {
+        long since = version.get();
+        double[] center = GeoHash.center(key.tile);
+        double spread = spread(center) + SLACK;
+        double reach = key.radius + spread; //farther alerts are out of the radius everywhere
+        List<Distance> nearest = index.nearest(center[0], center[1], reach, 0, key.k);
+        if (nearest.size() == key.k) {
+            reach = Math.min(reach, nearest.get(key.k - 1).getDistance() + 2 * spread);
+        }
+        List<Distance> within = index.within(center[0], center[1], reach);
+        int[] ids = new int[within.size()];
+        double[] latitudes = new double[within.size()];
+        double[] longitudes = new double[within.size()];
+        int size = 0;
+        for (Distance d : within) {
+            double[] position = index.position(d.getId());
+            if (position != null) { //removed meanwhile, the version has changed
+                ids[size] = d.getId();
+                latitudes[size] = position[0];
+                longitudes[size] = position[1];
+                size++;
+            }
+        }
+        Entry entry = new Entry(ids, latitudes, longitudes, size, center[0], center[1], reach);
+        if (entries.size() >= PURGE_SIZE) {
+            entries.clear();
+        }
+        entries.put(key, entry);
+        if (version.get() != since) {
+            entries.remove(key);
+        }
+        return entry;
+    }
+
+    /**
+     * Distance from the center of a tile to its farthest corner.
+     *
+     * @param center {latitude, longitude} of the tile center
+     * @return distance in km
+     */
+    private static double spread(double[] center) {
+        double[] size = GeoHash.size(PRECISION);
+        double spread = 0;
+        for (int lat = -1; lat <= 1; lat += 2) {
+            for (int lon = -1; lon <= 1; lon += 2) {
+                spread = Math.max(spread, SpatialIndex.distance(center[0], center[1],
+                        center[0] + lat * size[0] / 2, center[1] + lon * size[1] / 2));
+            }
+        }
+        return spread;
+    }
+
+    /**
+     * Tile and page size of an entry.
+     */
+    private static class Key {
+
+        private final String tile;
+        private final double radius;
+        private final int k; //first + max of the page
+
+        Key(String tile, double radius, int k) {
+            this.tile = tile;
+            this.radius = radius;
+            this.k = k;
+        }
+
+        @Override
+        public int hashCode() {
+            int hash = tile.hashCode();
+            hash = 31 * hash + Double.hashCode(radius);
+            hash = 31 * hash + k;
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) obj;
+            return tile.equals(other.tile) && Double.compare(radius, other.radius) == 0
+                    && k == other.k;
+        }
+    }
+
+    /**
+     * Candidate alerts of a tile and the area where a change would modify
+     * them.
+     */
+    private static class Entry {
+
+        private final int[] ids;
+        private final double[] latitudes;
+        private final double[] longitudes;
+        private final int size;
+        private final double latitude; //tile center
+        private final double longitude;
+        private final double reach; //km from the center
+
+        Entry(int[] ids, double[] latitudes, double[] longitudes, int size, double latitude,
+                double longitude, double reach) {
+            this.ids = ids;
+            this.latitudes = latitudes;
+            this.longitudes = longitudes;
+            this.size = size;
+            this.latitude = latitude;
+            this.longitude = longitude;
+            this.reach = reach;
+        }
+
+        /**
+         * Ranks the candidates by distance to a position of the tile.
+         */
+        List<Distance> page(double lat, double lon, double radius, int first, int max) {
+            List<Distance> ranked = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                double d = SpatialIndex.distance(lat, lon, latitudes[i], longitudes[i]);
+                if (d <= radius) {
+                    ranked.add(new Distance(ids[i], d));
+                }
+            }
+            List<Distance> page = new ArrayList<>();
+            if (ranked.size() > first) {
+                Collections.sort(ranked, Comparator.comparingDouble(Distance::getDistance));
+                int end = (int) Math.min((long) first + max, ranked.size());
+                page.addAll(ranked.subList(first, end));
+            }
+            return page;
+        }
+
+        boolean isChangedBy(int id, double[]... positions) {
+            for (double[] p : positions) {
+                if (p != null && SpatialIndex.distance(latitude, longitude, p[0], p[1]) <= reach) {
+                    return true;
+                }
+            }
+            for (int i = 0; i < size; i++) {
+                if (ids[i] == id) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
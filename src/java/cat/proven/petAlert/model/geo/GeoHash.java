@@ -0,0 +1,87 @@
+package cat.proven.petAlert.model.geo;
+
+/**
+ * Geohash of a position: the world is split in tiles named by a base 32
+ * string, each character divides the tile of its prefix in 32 tiles.
+ *
+ * @author Pet Alert
+ */
+public class GeoHash {
+
+    /* ATTRIBUTES */
+    private static final String BASE32 = "0123456789bcdefghjkmnpqrstuvwxyz";
+
+    /* METHODS */
+    /**
+     * Geohash of the tile that contains a position.
+     *
+     * @param latitude north south position
+     * @param longitude east west position
+     * @param precision number of characters, 6 is a tile of about 1.2 x 0.6 km
+     * @return geohash
+     */
+    public static String encode(double latitude, double longitude, int precision) {
+        double[] lat = {-90, 90};
+        double[] lon = {-180, 180};
+        char[] hash = new char[precision];
+        boolean even = true; //even bits split the longitude
+        for (int i = 0; i < precision; i++) {
+            int c = 0;
+            for (int bit = 4; bit >= 0; bit--) {
+                double[] range = even ? lon : lat;
+                double value = even ? longitude : latitude;
+                double mid = (range[0] + range[1]) / 2;
+                if (value >= mid) {
+                    c |= 1 << bit;
+                    range[0] = mid;
+                } else {
+                    range[1] = mid;
+                }
+                even = !even;
+            }
+            hash[i] = BASE32.charAt(c);
+        }
+        return new String(hash);
+    }
+
+    /**
+     * Size of the tiles of a precision.
+     *
+     * @param precision number of characters
+     * @return {latitude, longitude} span in degrees
+     */
+    public static double[] size(int precision) {
+        int bits = 5 * precision;
+        int lonBits = (bits + 1) / 2; //even bits split the longitude
+        return new double[]{180 / Math.pow(2, bits - lonBits), 360 / Math.pow(2, lonBits)};
+    }
+
+    /**
+     * Center of a geohash tile.
+     *
+     * @param hash geohash
+     * @return {latitude, longitude} of the center
+     */
+    public static double[] center(String hash) {
+        double[] lat = {-90, 90};
+        double[] lon = {-180, 180};
+        boolean even = true;
+        for (int i = 0; i < hash.length(); i++) {
+            int c = BASE32.indexOf(hash.charAt(i));
+            if (c < 0) {
+                throw new IllegalArgumentException("Invalid geohash: " + hash);
+            }
+            for (int bit = 4; bit >= 0; bit--) {
+                double[] range = even ? lon : lat;
+                double mid = (range[0] + range[1]) / 2;
+                if ((c & (1 << bit)) != 0) {
+                    range[0] = mid;
+                } else {
+                    range[1] = mid;
+                }
+                even = !even;
+            }
+        }
+        return new double[]{(lat[0] + lat[1]) / 2, (lon[0] + lon[1]) / 2};
+    }
+}
@@ -0,0 +1,563 @@
+package cat.proven.petAlert.model.geo;
+
+import cat.proven.petAlert.model.Distance;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-memory grid index over the coordinates of active alerts. Answers nearest
+ * alert pages without touching the database.
+ *
+ * Points are stored as a struct of arrays of primitives, one slot per alert,
+ * with the unit vector of the position. The cosine of the central angle
+ * between two positions, the same one calcDistance passes to acos, is the dot
+ * product of their vectors, so candidates are compared with three products
+ * and the arc cosine is only computed for the returned page. Searches keep
+ * the nearest alerts of the page in a bounded heap taken from a small pool,
+ * not a thread local, so there is no allocation per candidate alert nor per
+ * search when each request runs in a new virtual thread.
+ *
+ * @author Pet Alert
+ */
+public class SpatialIndex {
+
+    /* ATTRIBUTES */
+    private static final double EARTH_RADIUS = 6371; //km, same as calcDistance
+    private static final double KM_PER_DEGREE = Math.PI * EARTH_RADIUS / 180;
+    private static final double CELL_SIZE = 0.5; //degrees
+    private static final int ROWS = (int) Math.ceil(180 / CELL_SIZE);
+    private static final int COLS = (int) Math.ceil(360 / CELL_SIZE);
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final int POOL_SIZE = 64; //heaps kept for concurrent searches
+    private static final int POOLED_CAPACITY = 4096; //larger heaps are not kept
+
+    //one slot per alert, slots 0..size-1 are used
+    private int[] ids;
+    private double[] xs; //unit vector of the position
+    private double[] ys;
+    private double[] zs;
+    private int[] cellOf; //cell of the slot
+    private int[] positionInCell; //position of the slot in cellSlots[cellOf]
+    private int size;
+    private final Map<Integer, Integer> slots; //alert id -> slot, only for updates
+    private final int[][] cellSlots; //cell -> slots, by cell index
+    private final int[] cellSizes;
+    private final BlockingQueue<Candidates> pool;
+    private final ReadWriteLock lock;
+
+    /* CONSTRUCTORS */
+    public SpatialIndex() {
+        ids = new int[INITIAL_CAPACITY];
+        xs = new double[INITIAL_CAPACITY];
+        ys = new double[INITIAL_CAPACITY];
+        zs = new double[INITIAL_CAPACITY];
+        cellOf = new int[INITIAL_CAPACITY];
+        positionInCell = new int[INITIAL_CAPACITY];
+        slots = new HashMap<>();
+        cellSlots = new int[ROWS * COLS][];
+        cellSizes = new int[ROWS * COLS];
+        pool = new ArrayBlockingQueue<>(POOL_SIZE);
+        lock = new ReentrantReadWriteLock();
+    }
+
+    /* METHODS */
+    /**
+     * Adds or moves an alert in the index.
+     *
+     * @param id alert id
+     * @param latitude north south position
+     * @param longitude east west position
+     */
+    public void put(int id, double latitude, double longitude) {
+        lock.writeLock().lock();
+        try {
+            removePoint(id);
+            if (size == ids.length) {
+                grow();
+            }
+            int slot = size++;
+            double phi = Math.toRadians(latitude);
+            double lambda = Math.toRadians(longitude);
+            ids[slot] = id;
+            xs[slot] = Math.cos(phi) * Math.cos(lambda);
+            ys[slot] = Math.cos(phi) * Math.sin(lambda);
+            zs[slot] = Math.sin(phi);
+            slots.put(id, slot);
+            addToCell(cell(row(latitude), col(longitude)), slot);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Removes an alert from the index.
+     *
+     * @param id alert id
+     */
+    public void remove(int id) {
+        lock.writeLock().lock();
+        try {
+            removePoint(id);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Number of alerts in the index.
+     *
+     * @return indexed alerts
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Position of an alert in the index.
+     *
+     * @param id alert id
+     * @return {latitude, longitude} or null if the alert is not indexed
+     */
+    public double[] position(int id) {
+        lock.readLock().lock();
+        try {
+            double[] position = null;
+            Integer slot = slots.get(id);
+            if (slot != null) {
+                position = new double[]{Math.toDegrees(Math.asin(zs[slot])),
+                    Math.toDegrees(Math.atan2(ys[slot], xs[slot]))};
+            }
+            return position;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Looks for a page of alerts order by distance to the given position.
+     *
+     * @param latitude north south position
+     * @param longitude east west position
+     * @param first position of the first alert of the page
+     * @param max maximum number of alerts in the page
+     * @return list of distances, empty if there are no alerts in the page.
+     */
+    public List<Distance> nearest(double latitude, double longitude, int first, int max) {
+        return nearest(latitude, longitude, Double.POSITIVE_INFINITY, first, max);
+    }
+
+    /**
+     * Looks for a page of alerts within a radius order by distance to the
+     * given position. Rings of cells beyond the radius are not visited.
+     *
+     * @param latitude north south position
+     * @param longitude east west position
+     * @param radius maximum distance in km
+     * @param first position of the first alert of the page
+     * @param max maximum number of alerts in the page
+     * @return list of distances, empty if there are no alerts in the page.
+     */
+    public List<Distance> nearest(double latitude, double longitude, double radius, int first, int max) {
+        List<Distance> found = new ArrayList<>();
+        Candidates c = borrow();
+        double phi = Math.toRadians(latitude);
+        double lambda = Math.toRadians(longitude);
+        double x = Math.cos(phi) * Math.cos(lambda);
+        double y = Math.cos(phi) * Math.sin(lambda);
+        double z = Math.sin(phi);
+        double minCos = cosine(radius);
+        lock.readLock().lock();
+        try {
+            if (first < 0 || max <= 0 || size <= first) {
+                return found;
+            }
+            //no more than the indexed alerts, whatever the page asked for
+            int k = (int) Math.min((long) first + max, size);
+            c.clear(k);
+            int row = row(latitude);
+            int col = col(longitude);
+            int probes = 0;
+            int r = 0;
+            boolean done = false;
+            while (!done) {
+                probes += collectRing(row, col, r, x, y, z, minCos, c);
+                if (probes > size) {
+                    //sparse neighbourhood, a full scan is cheaper than more rings
+                    c.clear(k);
+                    for (int slot = 0; slot < size; slot++) {
+                        c.add(slot, x * xs[slot] + y * ys[slot] + z * zs[slot], minCos);
+                    }
+                    done = true;
+                } else if (row - r <= 0 && row + r >= ROWS - 1 && 2 * r + 1 >= COLS) {
+                    done = true; //whole grid visited
+                } else if (ringBound(latitude, longitude, row, col, r) > radius) {
+                    done = true; //next rings are out of the radius
+                } else if (c.isFull()) {
+                    done = c.farthest() >= cosine(ringBound(latitude, longitude, row, col, r));
+                }
+                r++;
+            }
+            c.sort();
+            for (int i = first; i < Math.min(k, c.size); i++) {
+                found.add(new Distance(ids[c.slots[i]], Math.acos(c.cosines[i]) * EARTH_RADIUS));
+            }
+        } finally {
+            lock.readLock().unlock();
+            release(c);
+        }
+        return found;
+    }
+
+    /**
+     * Looks for every alert within a radius of the given position, in no
+     * particular order. Unlike nearest there is no bounded heap, the alerts
+     * are collected as the rings of cells are visited.
+     *
+     * @param latitude north south position
+     * @param longitude east west position
+     * @param radius maximum distance in km, infinite for every alert
+     * @return list of distances, empty if there are no alerts within the radius.
+     */
+    public List<Distance> within(double latitude, double longitude, double radius) {
+        final List<Distance> found = new ArrayList<>();
+        Collector collector = (slot, cosine, minCos) -> {
+            if (cosine >= minCos) {
+                found.add(new Distance(ids[slot], Math.acos(Math.max(-1, Math.min(1, cosine))) * EARTH_RADIUS));
+            }
+        };
+        double phi = Math.toRadians(latitude);
+        double lambda = Math.toRadians(longitude);
+        double x = Math.cos(phi) * Math.cos(lambda);
+        double y = Math.cos(phi) * Math.sin(lambda);
+        double z = Math.sin(phi);
+        double minCos = cosine(radius);
+        lock.readLock().lock();
+        try {
+            int row = row(latitude);
+            int col = col(longitude);
+            int probes = 0;
+            int r = 0;
+            boolean done = size == 0;
+            while (!done) {
+                probes += collectRing(row, col, r, x, y, z, minCos, collector);
+                if (probes > size) {
+                    //sparse neighbourhood, a full scan is cheaper than more rings
+                    found.clear();
+                    for (int slot = 0; slot < size; slot++) {
+                        collector.add(slot, x * xs[slot] + y * ys[slot] + z * zs[slot], minCos);
+                    }
+                    done = true;
+                } else if (row - r <= 0 && row + r >= ROWS - 1 && 2 * r + 1 >= COLS) {
+                    done = true; //whole grid visited
+                } else {
+                    done = ringBound(latitude, longitude, row, col, r) > radius;
+                }
+                r++;
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return found;
+    }
+
+    /**
+     * Great circle distance with the same formula used by calcDistance.
+     *
+     * @param lat1 latitude of the first position
+     * @param lon1 longitude of the first position
+     * @param lat2 latitude of the second position
+     * @param lon2 longitude of the second position
+     * @return distance in km
+     */
+    public static double distance(double lat1, double lon1, double lat2, double lon2) {
+        double phi1 = Math.toRadians(lat1);
+        double phi2 = Math.toRadians(lat2);
+        double cos = Math.sin(phi1) * Math.sin(phi2)
+                + Math.cos(phi1) * Math.cos(phi2) * Math.cos(Math.toRadians(lon2 - lon1));
+        return Math.acos(Math.max(-1, Math.min(1, cos))) * EARTH_RADIUS;
+    }
+
+    /**
+     * Cosine of the central angle of a distance, positions closer than the
+     * distance have a greater cosine.
+     *
+     * @param km distance
+     * @return cosine, -infinity if every position is closer
+     */
+    private static double cosine(double km) {
+        return km < Math.PI * EARTH_RADIUS ? Math.cos(km / EARTH_RADIUS) : Double.NEGATIVE_INFINITY;
+    }
+
+    /**
+     * Adds the alerts of the cells at ring r around the given cell.
+     *
+     * @return number of cells probed
+     */
+    private int collectRing(int row, int col, int r, double x, double y, double z, double minCos,
+            Collector c) {
+        int probes = 0;
+        for (int i = row - r; i <= row + r; i++) {
+            if (i < 0 || i >= ROWS) {
+                continue;
+            }
+            if (i == row - r || i == row + r) {
+                //top and bottom edges of the ring, every column once
+                int width = Math.min(2 * r + 1, COLS);
+                for (int j = -r; j < width - r; j++) {
+                    probes++;
+                    collectCell(cell(i, Math.floorMod(col + j, COLS)), x, y, z, minCos, c);
+                }
+            } else if (2 * r - 1 < COLS) {
+                //left and right edges, unless the inner rows already wrapped
+                probes++;
+                collectCell(cell(i, Math.floorMod(col - r, COLS)), x, y, z, minCos, c);
+                if (2 * r < COLS) {
+                    probes++;
+                    collectCell(cell(i, Math.floorMod(col + r, COLS)), x, y, z, minCos, c);
+                }
+            }
+        }
+        return probes;
+    }
+
+    private void collectCell(int cell, double x, double y, double z, double minCos, Collector c) {
+        int[] inCell = cellSlots[cell];
+        for (int i = 0; i < cellSizes[cell]; i++) {
+            int slot = inCell[i];
+            c.add(slot, x * xs[slot] + y * ys[slot] + z * zs[slot], minCos);
+        }
+    }
+
+    /**
+     * Lower bound of the distance to any alert outside the rings already
+     * visited.
+     *
+     * @return distance in km
+     */
+    private double ringBound(double latitude, double longitude, int row, int col, int r) {
+        double south = (row - r) * CELL_SIZE - 90;
+        double north = (row + r + 1) * CELL_SIZE - 90;
+        double bound = Double.MAX_VALUE;
+        if (south > -90) {
+            bound = Math.min(bound, (latitude - south) * KM_PER_DEGREE);
+        }
+        if (north < 90) {
+            bound = Math.min(bound, (north - latitude) * KM_PER_DEGREE);
+        }
+        if (2 * r + 1 < COLS) {
+            double west = (col - r) * CELL_SIZE - 180;
+            double east = (col + r + 1) * CELL_SIZE - 180;
+            double dLon = Math.toRadians(Math.min(longitude - west, east - longitude));
+            double maxLat = Math.toRadians(Math.min(90, Math.max(Math.abs(south), Math.abs(north))));
+            double chord = Math.cos(maxLat) * Math.sin(Math.min(dLon, Math.PI) / 2);
+            bound = Math.min(bound, 2 * EARTH_RADIUS * Math.asin(Math.min(1, chord)));
+        }
+        return bound;
+    }
+
+    /**
+     * Removes an alert, moving the last slot to the free one.
+     */
+    private void removePoint(int id) {
+        Integer slot = slots.remove(id);
+        if (slot != null) {
+            removeFromCell(slot);
+            int last = --size;
+            if (slot != last) {
+                ids[slot] = ids[last];
+                xs[slot] = xs[last];
+                ys[slot] = ys[last];
+                zs[slot] = zs[last];
+                cellOf[slot] = cellOf[last];
+                positionInCell[slot] = positionInCell[last];
+                cellSlots[cellOf[slot]][positionInCell[slot]] = slot;
+                slots.put(ids[slot], slot);
+            }
+        }
+    }
+
+    private void addToCell(int cell, int slot) {
+        int[] inCell = cellSlots[cell];
+        if (inCell == null) {
+            inCell = new int[4];
+            cellSlots[cell] = inCell;
+        } else if (cellSizes[cell] == inCell.length) {
+            inCell = Arrays.copyOf(inCell, inCell.length * 2);
+            cellSlots[cell] = inCell;
+        }
+        cellOf[slot] = cell;
+        positionInCell[slot] = cellSizes[cell];
+        inCell[cellSizes[cell]++] = slot;
+    }
+
+    private void removeFromCell(int slot) {
+        int cell = cellOf[slot];
+        int[] inCell = cellSlots[cell];
+        int lastInCell = inCell[--cellSizes[cell]];
+        inCell[positionInCell[slot]] = lastInCell;
+        positionInCell[lastInCell] = positionInCell[slot];
+        if (cellSizes[cell] == 0) {
+            cellSlots[cell] = null;
+        }
+    }
+
+    private void grow() {
+        int capacity = ids.length * 2;
+        ids = Arrays.copyOf(ids, capacity);
+        xs = Arrays.copyOf(xs, capacity);
+        ys = Arrays.copyOf(ys, capacity);
+        zs = Arrays.copyOf(zs, capacity);
+        cellOf = Arrays.copyOf(cellOf, capacity);
+        positionInCell = Arrays.copyOf(positionInCell, capacity);
+    }
+
+    private static int row(double latitude) {
+        return Math.max(0, Math.min(ROWS - 1, (int) Math.floor((latitude + 90) / CELL_SIZE)));
+    }
+
+    private static int col(double longitude) {
+        return Math.floorMod((int) Math.floor((longitude + 180) / CELL_SIZE), COLS);
+    }
+
+    private static int cell(int row, int col) {
+        return row * COLS + col;
+    }
+
+    /**
+     * Takes a heap of the pool, or a new one if every heap is in use.
+     */
+    private Candidates borrow() {
+        Candidates c = pool.poll();
+        return c != null ? c : new Candidates();
+    }
+
+    /**
+     * Gives back a heap to the pool, unless the pool is full or the heap grew
+     * for a page too large to keep its arrays.
+     */
+    private void release(Candidates c) {
+        if (c.slots.length <= POOLED_CAPACITY) {
+            pool.offer(c);
+        }
+    }
+
+    /**
+     * Receives the alerts of the visited cells with the cosine of their
+     * distance to the searched position.
+     */
+    private interface Collector {
+
+        void add(int slot, double cosine, double minCos);
+    }
+
+    /**
+     * Nearest candidate alerts of a search, a bounded heap by cosine with the
+     * farthest one on top, in parallel primitive arrays reused by the
+     * searches through the pool. Keeping only the k nearest costs
+     * O(n log k) time and O(k) memory.
+     */
+    private static class Candidates implements Collector {
+
+        private int[] slots = new int[16];
+        private double[] cosines = new double[16];
+        private int size;
+        private int k;
+
+        /**
+         * Empties the heap.
+         *
+         * @param k number of candidates to keep
+         */
+        void clear(int k) {
+            this.size = 0;
+            this.k = k;
+            if (slots.length < k) {
+                slots = new int[k];
+                cosines = new double[k];
+            }
+        }
+
+        @Override
+        public void add(int slot, double cosine, double minCos) {
+            if (cosine >= minCos) {
+                if (size < k) {
+                    slots[size] = slot;
+                    cosines[size] = Math.max(-1, Math.min(1, cosine));
+                    siftUp(size++);
+                } else if (cosine > cosines[0]) {
+                    slots[0] = slot;
+                    cosines[0] = Math.max(-1, Math.min(1, cosine));
+                    siftDown(0, size);
+                }
+            }
+        }
+
+        boolean isFull() {
+            return size == k;
+        }
+
+        /**
+         * Cosine of the farthest candidate kept.
+         */
+        double farthest() {
+            return cosines[0];
+        }
+
+        /**
+         * Sorts the candidates from the nearest, the heap is no longer valid.
+         */
+        void sort() {
+            for (int end = size - 1; end > 0; end--) {
+                swap(0, end);
+                siftDown(0, end);
+            }
+        }
+
+        private void siftUp(int i) {
+            while (i > 0) {
+                int parent = (i - 1) >>> 1;
+                if (cosines[parent] <= cosines[i]) {
+                    break;
+                }
+                swap(parent, i);
+                i = parent;
+            }
+        }
+
+        private void siftDown(int i, int end) {
+            int child = 2 * i + 1;
+            while (child < end) {
+                if (child + 1 < end && cosines[child + 1] < cosines[child]) {
+                    child++;
+                }
+                if (cosines[i] <= cosines[child]) {
+                    break;
+                }
+                swap(i, child);
+                i = child;
+                child = 2 * i + 1;
+            }
+        }
+
+        private void swap(int i, int j) {
+            int slot = slots[i];
+            slots[i] = slots[j];
+            slots[j] = slot;
+            double cosine = cosines[i];
+            cosines[i] = cosines[j];
+            cosines[j] = cosine;
+        }
+    }
+}
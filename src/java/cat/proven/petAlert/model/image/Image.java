@@ -0,0 +1,76 @@
+package cat.proven.petAlert.model.image;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * ADT Image. The bytes are kept outside the java heap.
+ *
+ * @author Pet Alert
+ */
+public class Image {
+
+    /* ATTRIBUTES */
+    private final String hash;
+    private final ByteBuffer data;
+
+    /* CONSTRUCTORS */
+    public Image(String hash, byte[] bytes) {
+        this.hash = hash;
+        ByteBuffer buffer = ByteBuffer.allocateDirect(bytes.length);
+        buffer.put(bytes);
+        buffer.flip();
+        this.data = buffer.asReadOnlyBuffer();
+    }
+
+    /* GETTERS */
+    public String getHash() {
+        return hash;
+    }
+
+    public int getSize() {
+        return data.capacity();
+    }
+
+    /* METHODS */
+    /**
+     * Gets the first bytes of the image, enough to guess its type.
+     *
+     * @param length maximum number of bytes
+     * @return first bytes of the image
+     */
+    public byte[] getHeader(int length) {
+        ByteBuffer view = data.duplicate();
+        byte[] header = new byte[Math.min(length, view.remaining())];
+        view.get(header);
+        return header;
+    }
+
+    /**
+     * Writes the image bytes without copying them to the heap.
+     *
+     * @param out stream to write
+     * @throws IOException if the stream fails
+     */
+    public void writeTo(OutputStream out) throws IOException {
+        WritableByteChannel channel = Channels.newChannel(out);
+        ByteBuffer view = data.duplicate(); //own position, safe between threads
+        while (view.hasRemaining()) {
+            channel.write(view);
+        }
+        out.flush();
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("Image{");
+        sb.append("hash=").append(hash);
+        sb.append(", size=").append(getSize());
+        sb.append('}');
+        return sb.toString();
+    }
+}
@@ -0,0 +1,84 @@
+package cat.proven.petAlert.model.image;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Least recently used cache of images, bounded by the total number of bytes.
+ *
+ * @author Pet Alert
+ */
+public class ImageCache {
+
+    /* ATTRIBUTES */
+    private final long maxBytes;
+    private long usedBytes;
+    private final LinkedHashMap<Long, Image> images; //access order, by key()
+
+    /* CONSTRUCTORS */
+    /**
+     * Constructor.
+     *
+     * @param maxBytes maximum bytes of all the cached images
+     */
+    public ImageCache(long maxBytes) {
+        this.maxBytes = maxBytes;
+        this.images = new LinkedHashMap<>(16, 0.75f, true);
+    }
+
+    /* METHODS */
+    /**
+     * Looks for an image in cache.
+     *
+     * @param id animal id
+     * @param rendition image size
+     * @return the image or null if it is not cached
+     */
+    public synchronized Image get(int id, Rendition rendition) {
+        return images.get(key(id, rendition));
+    }
+
+    /**
+     * Adds an image, evicting the least recently used ones if needed. Images
+     * bigger than a quarter of the cache are not cached.
+     *
+     * @param id animal id
+     * @param rendition image size
+     * @param image to add
+     */
+    public synchronized void put(int id, Rendition rendition, Image image) {
+        if (image.getSize() <= maxBytes / 4) {
+            remove(key(id, rendition));
+            images.put(key(id, rendition), image);
+            usedBytes += image.getSize();
+            Iterator<Map.Entry<Long, Image>> it = images.entrySet().iterator();
+            while (usedBytes > maxBytes && it.hasNext()) {
+                usedBytes -= it.next().getValue().getSize();
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * Removes all the renditions of an image from cache.
+     *
+     * @param id animal id
+     */
+    public synchronized void remove(int id) {
+        for (Rendition rendition : Rendition.values()) {
+            remove(key(id, rendition));
+        }
+    }
+
+    private void remove(long key) {
+        Image old = images.remove(key);
+        if (old != null) {
+            usedBytes -= old.getSize();
+        }
+    }
+
+    private static long key(int id, Rendition rendition) {
+        return ((long) id << 2) | rendition.ordinal();
+    }
+}
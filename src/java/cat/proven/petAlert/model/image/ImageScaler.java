@@ -0,0 +1,47 @@
+package cat.proven.petAlert.model.image;
+
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import javax.imageio.ImageIO;
+
+/**
+ * Produces scaled down renditions of an image.
+ *
+ * @author Pet Alert
+ */
+public class ImageScaler {
+
+    /**
+     * Scales an image to the size of a rendition keeping its proportions.
+     *
+     * @param image original image bytes
+     * @param rendition size to produce
+     * @return jpeg bytes of the rendition, null if the image can not be read
+     * or it is already smaller than the rendition.
+     * @throws IOException if the image can not be encoded
+     */
+    public static byte[] scale(byte[] image, Rendition rendition) throws IOException {
+        byte[] scaled = null;
+        BufferedImage source = ImageIO.read(new ByteArrayInputStream(image));
+        int max = rendition.getMaxSize();
+        if (source != null && max > 0 && Math.max(source.getWidth(), source.getHeight()) > max) {
+            double ratio = (double) max / Math.max(source.getWidth(), source.getHeight());
+            int width = Math.max(1, (int) Math.round(source.getWidth() * ratio));
+            int height = Math.max(1, (int) Math.round(source.getHeight() * ratio));
+            BufferedImage target = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+            Graphics2D g = target.createGraphics();
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION,
+                    RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g.drawImage(source, 0, 0, width, height, null);
+            g.dispose();
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            ImageIO.write(target, "jpg", out);
+            scaled = out.toByteArray();
+        }
+        return scaled;
+    }
+}
@@ -0,0 +1,36 @@
+package cat.proven.petAlert.model.image;
+
+/**
+ * Image sizes stored for every animal image.
+ *
+ * @author Pet Alert
+ */
+public enum Rendition {
+
+    THUMBNAIL(160), MEDIUM(640), ORIGINAL(0);
+
+    private final int maxSize; //pixels of the longest side, 0 if not scaled
+
+    private Rendition(int maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * Gets the rendition of a request parameter.
+     *
+     * @param size thumbnail, medium or original, null for original
+     * @return rendition
+     * @throws IllegalArgumentException if the size does not exist
+     */
+    public static Rendition fromParam(String size) {
+        Rendition rendition = ORIGINAL;
+        if (size != null && !size.isEmpty()) {
+            rendition = valueOf(size.toUpperCase());
+        }
+        return rendition;
+    }
+}
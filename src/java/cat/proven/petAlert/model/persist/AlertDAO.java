@@ -0,0 +1,422 @@
+package cat.proven.petAlert.model.persist;
+
+import cat.proven.petAlert.logger.ServerLogger;
+import cat.proven.petAlert.model.Alert;
+import cat.proven.petAlert.model.AlertPatch;
+import cat.proven.petAlert.model.Animal;
+import cat.proven.petAlert.model.Coordinate;
+import cat.proven.petAlert.model.Description;
+import cat.proven.petAlert.model.report.ReportBuffer;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Level;
+
+/**
+ * DAO Alert, inserts alerts with JDBC batches. With rewriteBatchedStatements
+ * in the connection url each batch is sent as one multi-row INSERT.
+ *
+ * @author Pet Alert
+ */
+public class AlertDAO {
+
+    private static final int REPORTS_PER_QUERY = 500;
+    private final DbConnect dbConnect;
+    private final ServerLogger logger;
+
+    /**
+     * Constructor
+     *
+     * @param logger ServerLogger object
+     */
+    public AlertDAO(ServerLogger logger) {
+        dbConnect = DbConnect.getInstance();
+        this.logger = logger;
+    }
+
+    /**
+     * Inserts alerts with their coordinate, animal and description in a
+     * single transaction, one batch per table. The generated ids are set in
+     * the given objects.
+     *
+     * @param alerts alerts to insert, already validated
+     * @param userId owner of the alerts
+     * @return number of alerts inserted or -1 in case of error, then nothing
+     * is inserted.
+     */
+    public int insertAlerts(List<Alert> alerts, int userId) {
+        int result;
+        try (Connection conn = dbConnect.getConnection()) {
+            if (conn != null) {
+                boolean autoCommit = conn.getAutoCommit();
+                conn.setAutoCommit(false);
+                try {
+                    insertCoordinates(conn, alerts);
+                    insertAnimals(conn, alerts);
+                    insertDescriptions(conn, alerts);
+                    insertAlertRows(conn, alerts, userId);
+                    conn.commit();
+                    result = alerts.size();
+                } catch (SQLException ex) {
+                    conn.rollback();
+                    for (Alert alert : alerts) {
+                        alert.setId(null);
+                        alert.getCoordId().setId(null);
+                        alert.getAnimalId().setId(null);
+                        alert.getDescId().setId(null);
+                    }
+                    throw ex;
+                } finally {
+                    conn.setAutoCommit(autoCommit); //the connection goes back to the pool
+                }
+            } else {
+                result = -1;
+            }
+        } catch (SQLException ex) {
+            result = -1;
+            logger.getLogger().log(Level.SEVERE, ex.getMessage());
+        }
+        return result;
+    }
+
+    /**
+     * Changes the fields of an alert set in a patch with a single UPDATE,
+     * joining only the tables with changed columns.
+     *
+     * @param alertId alert to change
+     * @param patch fields to change, the null ones are not changed
+     * @return 1 if the alert was changed, 0 if it does not exist, -1 in case
+     * of error.
+     */
+    public int patchAlert(int alertId, AlertPatch patch) {
+        int result;
+        StringBuilder sql = new StringBuilder("UPDATE alerts a");
+        if (patch.changes("animals")) {
+            sql.append(" JOIN animals an ON an.id = a.animal_id");
+        }
+        if (patch.changes("descriptions")) {
+            sql.append(" JOIN descriptions d ON d.id = a.desc_id");
+        }
+        if (patch.changes("coordinates")) {
+            sql.append(" JOIN coordinates c ON c.id = a.coord_id");
+        }
+        List<Object> params = new ArrayList<>();
+        StringBuilder set = new StringBuilder();
+        set(set, params, "a.creation_date", patch.getCreationDate());
+        set(set, params, "a.active", patch.getActive());
+        set(set, params, "an.chip_num", patch.getChipNum());
+        set(set, params, "an.name", patch.getName());
+        set(set, params, "an.kind", patch.getKind());
+        set(set, params, "an.hair_color", patch.getHairColor());
+        set(set, params, "an.race", patch.getRace());
+        set(set, params, "an.half_blood", patch.getHalfBlood());
+        set(set, params, "an.age", patch.getAge());
+        set(set, params, "an.sex", patch.getSex());
+        set(set, params, "d.title", patch.getTitle());
+        set(set, params, "d.lost_day_hour", patch.getLostDayHour());
+        set(set, params, "d.description", patch.getDescription());
+        set(set, params, "d.phone", patch.getPhone());
+        set(set, params, "c.latitude", patch.getLatitude());
+        set(set, params, "c.longitude", patch.getLongitude());
+        sql.append(" SET ").append(set).append(" WHERE a.id = ?");
+        try (Connection conn = dbConnect.getConnection()) {
+            if (conn != null) {
+                try (PreparedStatement st = conn.prepareStatement(sql.toString())) {
+                    int i = 1;
+                    for (Object param : params) {
+                        st.setObject(i++, param);
+                    }
+                    st.setInt(i, alertId);
+                    //rows found, not only changed, with the default useAffectedRows=false
+                    result = st.executeUpdate() > 0 ? 1 : 0;
+                }
+            } else {
+                result = -1;
+            }
+        } catch (SQLException ex) {
+            result = -1;
+            logger.getLogger().log(Level.SEVERE, ex.getMessage());
+        }
+        return result;
+    }
+
+    /**
+     * Adds a column to the SET clause of an update if its value is set.
+     */
+    private void set(StringBuilder set, List<Object> params, String column, Object value) {
+        if (value != null) {
+            set.append(params.isEmpty() ? "" : ", ").append(column).append(" = ?");
+            params.add(value);
+        }
+    }
+
+    /**
+     * Checks if an user can report an alert, with one read by primary key.
+     *
+     * @param alertId reported alert
+     * @param userId user reporting the alert
+     * @return 1 if the report can be counted, 0 if the user already reported
+     * the alert, -2 if there is no active alert with that id, -1 in case of
+     * error.
+     */
+    public int checkReport(int alertId, int userId) {
+        int result;
+        try (Connection conn = dbConnect.getConnection()) {
+            if (conn != null) {
+                try (PreparedStatement st = conn.prepareStatement("SELECT a.active, EXISTS "
+                        + "(SELECT 1 FROM alert_reports r WHERE r.alert_id = a.id AND r.user_id = ?) "
+                        + "FROM alerts a WHERE a.id = ?")) {
+                    st.setInt(1, userId);
+                    st.setInt(2, alertId);
+                    try (ResultSet rs = st.executeQuery()) {
+                        if (!rs.next() || !rs.getBoolean(1)) {
+                            result = -2;
+                        } else {
+                            result = rs.getBoolean(2) ? 0 : 1;
+                        }
+                    }
+                }
+            } else {
+                result = -1;
+            }
+        } catch (SQLException ex) {
+            result = -1;
+            logger.getLogger().log(Level.SEVERE, ex.getMessage());
+        }
+        return result;
+    }
+
+    /**
+     * Saves buffered reports in a single transaction: the new ones are
+     * recorded in alert_reports with a batch and counted with a batch of
+     * UPDATE alerts SET report_number = report_number + n, one per alert.
+     * Reports already recorded are not counted again.
+     *
+     * @param reports alert id and user id pairs, see ReportBuffer
+     * @return report number of each alert with new reports, 0 if the alert is
+     * finished, or null in case of error, then nothing is saved.
+     */
+    public Map<Integer, Integer> flushReports(long[] reports) {
+        Map<Integer, Integer> changed;
+        try (Connection conn = dbConnect.getConnection()) {
+            if (conn != null) {
+                boolean autoCommit = conn.getAutoCommit();
+                conn.setAutoCommit(false);
+                try {
+                    Set<Long> recorded = selectRecordedReports(conn, reports);
+                    Map<Integer, Integer> increments = new HashMap<>();
+                    long now = System.currentTimeMillis();
+                    try (PreparedStatement record = conn.prepareStatement("INSERT IGNORE INTO alert_reports "
+                            + "(alert_id, user_id, report_date) VALUES (?, ?, ?)")) {
+                        for (long report : reports) {
+                            if (!recorded.contains(report)) {
+                                record.setInt(1, ReportBuffer.alertId(report));
+                                record.setInt(2, ReportBuffer.userId(report));
+                                record.setLong(3, now);
+                                record.addBatch();
+                                increments.merge(ReportBuffer.alertId(report), 1, Integer::sum);
+                            }
+                        }
+                        record.executeBatch();
+                    }
+                    try (PreparedStatement count = conn.prepareStatement("UPDATE alerts "
+                            + "SET report_number = report_number + ? WHERE id = ?")) {
+                        for (Map.Entry<Integer, Integer> e : increments.entrySet()) {
+                            count.setInt(1, e.getValue());
+                            count.setInt(2, e.getKey());
+                            count.addBatch();
+                        }
+                        count.executeBatch();
+                    }
+                    changed = selectReportNumbers(conn, increments.keySet());
+                    conn.commit();
+                } catch (SQLException ex) {
+                    conn.rollback();
+                    throw ex;
+                } finally {
+                    conn.setAutoCommit(autoCommit);
+                }
+            } else {
+                changed = null;
+            }
+        } catch (SQLException ex) {
+            changed = null;
+            logger.getLogger().log(Level.SEVERE, ex.getMessage());
+        }
+        return changed;
+    }
+
+    /**
+     * Looks for the report number of active alerts, in queries of up to
+     * REPORTS_PER_QUERY alerts.
+     *
+     * @return report number of each alert, 0 if it is finished
+     */
+    private Map<Integer, Integer> selectReportNumbers(Connection conn, Collection<Integer> ids)
+            throws SQLException {
+        Map<Integer, Integer> numbers = new HashMap<>();
+        List<Integer> list = new ArrayList<>(ids);
+        for (int from = 0; from < list.size(); from += REPORTS_PER_QUERY) {
+            int to = Math.min(list.size(), from + REPORTS_PER_QUERY);
+            StringBuilder sql = new StringBuilder("SELECT id, report_number, active FROM alerts "
+                    + "WHERE id IN (");
+            for (int i = from; i < to; i++) {
+                sql.append(i > from ? ", ?" : "?");
+            }
+            sql.append(')');
+            try (PreparedStatement st = conn.prepareStatement(sql.toString())) {
+                for (int i = from; i < to; i++) {
+                    st.setInt(i - from + 1, list.get(i));
+                }
+                try (ResultSet rs = st.executeQuery()) {
+                    while (rs.next()) {
+                        numbers.put(rs.getInt(1), rs.getBoolean(3) ? rs.getInt(2) : 0);
+                    }
+                }
+            }
+        }
+        return numbers;
+    }
+
+    /**
+     * Looks for the reports already recorded among the given ones, in
+     * queries of up to REPORTS_PER_QUERY pairs.
+     */
+    private Set<Long> selectRecordedReports(Connection conn, long[] reports) throws SQLException {
+        Set<Long> recorded = new HashSet<>();
+        for (int from = 0; from < reports.length; from += REPORTS_PER_QUERY) {
+            int to = Math.min(reports.length, from + REPORTS_PER_QUERY);
+            StringBuilder sql = new StringBuilder("SELECT alert_id, user_id FROM alert_reports "
+                    + "WHERE (alert_id, user_id) IN (");
+            for (int i = from; i < to; i++) {
+                sql.append(i > from ? ", (?, ?)" : "(?, ?)");
+            }
+            sql.append(')');
+            try (PreparedStatement st = conn.prepareStatement(sql.toString())) {
+                int p = 1;
+                for (int i = from; i < to; i++) {
+                    st.setInt(p++, ReportBuffer.alertId(reports[i]));
+                    st.setInt(p++, ReportBuffer.userId(reports[i]));
+                }
+                try (ResultSet rs = st.executeQuery()) {
+                    while (rs.next()) {
+                        recorded.add(ReportBuffer.pair(rs.getInt(1), rs.getInt(2)));
+                    }
+                }
+            }
+        }
+        return recorded;
+    }
+
+    private void insertCoordinates(Connection conn, List<Alert> alerts) throws SQLException {
+        try (PreparedStatement st = conn.prepareStatement("INSERT INTO coordinates "
+                + "(latitude, longitude) VALUES (?, ?)", Statement.RETURN_GENERATED_KEYS)) {
+            for (Alert alert : alerts) {
+                Coordinate c = alert.getCoordId();
+                st.setBigDecimal(1, c.getLatitude());
+                st.setBigDecimal(2, c.getLongitude());
+                st.addBatch();
+            }
+            st.executeBatch();
+            try (ResultSet keys = st.getGeneratedKeys()) {
+                for (Alert alert : alerts) {
+                    alert.getCoordId().setId(nextKey(keys));
+                }
+            }
+        }
+    }
+
+    private void insertAnimals(Connection conn, List<Alert> alerts) throws SQLException {
+        try (PreparedStatement st = conn.prepareStatement("INSERT INTO animals "
+                + "(chip_num, name, kind, hair_color, race, half_blood, age, sex, image, image_hash) "
+                + "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)", Statement.RETURN_GENERATED_KEYS)) {
+            for (Alert alert : alerts) {
+                Animal a = alert.getAnimalId();
+                st.setObject(1, a.getChipNum(), Types.BIGINT);
+                st.setString(2, a.getName());
+                st.setString(3, a.getKind());
+                st.setString(4, a.getHairColor());
+                st.setString(5, a.getRace());
+                st.setObject(6, a.getHalfBlood(), Types.BOOLEAN);
+                st.setObject(7, a.getAge(), Types.INTEGER);
+                st.setString(8, a.getSex());
+                st.setBytes(9, a.getImage());
+                st.setString(10, a.getImageHash());
+                st.addBatch();
+            }
+            st.executeBatch();
+            try (ResultSet keys = st.getGeneratedKeys()) {
+                for (Alert alert : alerts) {
+                    alert.getAnimalId().setId(nextKey(keys));
+                }
+            }
+        }
+    }
+
+    private void insertDescriptions(Connection conn, List<Alert> alerts) throws SQLException {
+        try (PreparedStatement st = conn.prepareStatement("INSERT INTO descriptions "
+                + "(title, lost_day_hour, description, phone) VALUES (?, ?, ?, ?)",
+                Statement.RETURN_GENERATED_KEYS)) {
+            for (Alert alert : alerts) {
+                Description d = alert.getDescId();
+                st.setString(1, d.getTitle());
+                st.setLong(2, d.getLostDayHour());
+                st.setString(3, d.getDescription());
+                st.setString(4, d.getPhone());
+                st.addBatch();
+            }
+            st.executeBatch();
+            try (ResultSet keys = st.getGeneratedKeys()) {
+                for (Alert alert : alerts) {
+                    alert.getDescId().setId(nextKey(keys));
+                }
+            }
+        }
+    }
+
+    private void insertAlertRows(Connection conn, List<Alert> alerts, int userId) throws SQLException {
+        try (PreparedStatement st = conn.prepareStatement("INSERT INTO alerts "
+                + "(creation_date, active, report_number, user_id, animal_id, desc_id, coord_id) "
+                + "VALUES (?, ?, ?, ?, ?, ?, ?)", Statement.RETURN_GENERATED_KEYS)) {
+            for (Alert alert : alerts) {
+                st.setLong(1, alert.getCreationDate());
+                st.setBoolean(2, alert.getActive());
+                st.setInt(3, 0);
+                st.setInt(4, userId);
+                st.setInt(5, alert.getAnimalId().getId());
+                st.setInt(6, alert.getDescId().getId());
+                st.setInt(7, alert.getCoordId().getId());
+                st.addBatch();
+            }
+            st.executeBatch();
+            try (ResultSet keys = st.getGeneratedKeys()) {
+                for (Alert alert : alerts) {
+                    alert.setId(nextKey(keys));
+                }
+            }
+        }
+    }
+
+    /**
+     * Reads the next generated key of a batch.
+     *
+     * @throws SQLException if there are fewer keys than rows
+     */
+    private int nextKey(ResultSet keys) throws SQLException {
+        if (!keys.next()) {
+            throw new SQLException("Missing generated key");
+        }
+        return keys.getInt(1);
+    }
+
+}
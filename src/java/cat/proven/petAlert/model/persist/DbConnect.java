@@ -3,9 +3,17 @@ package cat.proven.petAlert.model.persist;
 import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.SQLException;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.naming.InitialContext;
+import javax.naming.NamingException;
+import javax.sql.DataSource;
+import org.apache.tomcat.jdbc.pool.DataSourceProxy;
 
 /**
- * Database connection
+ * Database connection. Connections are borrowed from the container pool
+ * jdbc/PetAlertDB (see META-INF/context.xml), which is also the data source of
+ * the PetAlertPU persistence unit. Outside the container it falls back to
+ * DriverManager.
  *
  * @author Pet Alert
  */
@@ -13,9 +21,15 @@ public class DbConnect {
 
     private static DbConnect instance;
     private final String DRIVER = "com.mysql.jdbc.Driver";
-    private final String BD_URL = "jdbc:mysql://" + "localhost:3306/dam1905?noAccessToProcedureBodies=true";
+    private final String BD_URL = "jdbc:mysql://" + "localhost:3306/dam1905?noAccessToProcedureBodies=true&rewriteBatchedStatements=true";
     private final String USUARI = "dam1905";
     private final String PASSWORD = "Ew5kaer9!";
+    private final String DATA_SOURCE = "java:comp/env/jdbc/PetAlertDB";
+    private DataSource dataSource;
+    private final AtomicLong acquired = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong waitNanos = new AtomicLong();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
 
     /**
      * Singleton constructor.
@@ -27,6 +41,11 @@ public class DbConnect {
             System.err.append("Instalation error. Contact to the admin");
             System.exit(-1);
         }
+        try {
+            dataSource = (DataSource) new InitialContext().lookup(DATA_SOURCE);
+        } catch (NamingException e) {
+            dataSource = null; //not running in the container
+        }
     }
 
     /**
@@ -34,7 +53,7 @@ public class DbConnect {
      *
      * @return unique instance.
      */
-    public static DbConnect getInstance() {
+    public static synchronized DbConnect getInstance() {
         if (instance == null) {
             instance = new DbConnect();
         }
@@ -42,18 +61,54 @@ public class DbConnect {
     }
 
     /**
-     * Conection for the data base.
+     * Conection for the data base. It must be closed to give it back to the
+     * pool.
      *
      * @return connection or null in case of error.
      */
     public Connection getConnection() {
         Connection conn = null;
+        long start = System.nanoTime();
         try {
-            conn = DriverManager.getConnection(BD_URL, USUARI, PASSWORD);
+            if (dataSource != null) {
+                conn = dataSource.getConnection();
+            } else {
+                conn = DriverManager.getConnection(BD_URL, USUARI, PASSWORD);
+            }
+            acquired.incrementAndGet();
         } catch (SQLException e) {
             conn = null;
+            failed.incrementAndGet(); //includes pool acquisition timeouts
         }
+        long wait = System.nanoTime() - start;
+        waitNanos.addAndGet(wait);
+        maxWaitNanos.accumulateAndGet(wait, Math::max);
         return conn;
     }
 
+    /**
+     * Current state of the connection pool and acquisition times since
+     * startup.
+     *
+     * @return pool statistics.
+     */
+    public PoolStatistics getStatistics() {
+        PoolStatistics stats = new PoolStatistics();
+        if (dataSource instanceof DataSourceProxy) {
+            DataSourceProxy pool = (DataSourceProxy) dataSource;
+            stats.setPooled(true);
+            stats.setSize(pool.getSize());
+            stats.setActive(pool.getActive());
+            stats.setIdle(pool.getIdle());
+            stats.setWaiting(pool.getWaitCount());
+            stats.setMaxActive(pool.getMaxActive());
+        }
+        long count = acquired.get() + failed.get();
+        stats.setAcquired(acquired.get());
+        stats.setFailed(failed.get());
+        stats.setAverageWaitMillis(count > 0 ? waitNanos.get() / 1e6 / count : 0);
+        stats.setMaxWaitMillis(maxWaitNanos.get() / 1e6);
+        return stats;
+    }
+
 }
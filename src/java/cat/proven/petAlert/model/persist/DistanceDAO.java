@@ -38,14 +38,16 @@ public class DistanceDAO {
         String query = "{ call calcDistance(?,?) }";
         try (Connection conn = dbConnect.getConnection()) {
             if (conn != null) {
-                CallableStatement st = conn.prepareCall(query);
-                st.setDouble(1, latitude);
-                st.setDouble(2, longitude);
-                ResultSet rs = st.executeQuery();
-                found = new ArrayList<>();
-                while (rs.next()) {
-                    Distance distances = resultSetToDistance(rs);
-                    found.add(distances);
+                try (CallableStatement st = conn.prepareCall(query)) {
+                    st.setDouble(1, latitude);
+                    st.setDouble(2, longitude);
+                    try (ResultSet rs = st.executeQuery()) {
+                        found = new ArrayList<>();
+                        while (rs.next()) {
+                            Distance distances = resultSetToDistance(rs);
+                            found.add(distances);
+                        }
+                    }
                 }
             } else {
                 found = null;
@@ -58,6 +60,74 @@ public class DistanceDAO {
         return found;
     }
 
+    /**
+     * Search a page of active alerts sorted by distance. The
+     * calcDistancePage procedure uses ORDER BY with LIMIT, so only the
+     * nearest first + max alerts are kept while sorting.
+     *
+     * @param latitude param to search
+     * @param longitude param to search
+     * @param first position of the first alert of the page
+     * @param max maximum number of alerts in the page
+     * @return list of distances or null in case of error.
+     */
+    public List<Distance> selectWhereDistance(Double latitude, Double longitude, int first, int max) {
+        return selectPage("{ call calcDistancePage(?,?,?,?) }", first, max, latitude, longitude);
+    }
+
+    /**
+     * Search a page of active alerts within a radius sorted by distance. The
+     * calcDistanceRadiusPage procedure first restricts the coordinates to the
+     * bounding box of the radius with the SPATIAL index of their location
+     * column, and only computes the ST_Distance_Sphere of those.
+     *
+     * @param latitude param to search
+     * @param longitude param to search
+     * @param radius maximum distance in km
+     * @param first position of the first alert of the page
+     * @param max maximum number of alerts in the page
+     * @return list of distances or null in case of error.
+     */
+    public List<Distance> selectWhereDistance(Double latitude, Double longitude, double radius,
+            int first, int max) {
+        return selectPage("{ call calcDistanceRadiusPage(?,?,?,?,?) }", first, max,
+                latitude, longitude, radius);
+    }
+
+    /**
+     * Calls a distance procedure with the given parameters followed by the
+     * page limits.
+     *
+     * @return list of distances or null in case of error.
+     */
+    private List<Distance> selectPage(String query, int first, int max, double... params) {
+        List<Distance> found;
+        try (Connection conn = dbConnect.getConnection()) {
+            if (conn != null) {
+                try (CallableStatement st = conn.prepareCall(query)) {
+                    int i = 1;
+                    for (double param : params) {
+                        st.setDouble(i++, param);
+                    }
+                    st.setInt(i++, first);
+                    st.setInt(i, max);
+                    try (ResultSet rs = st.executeQuery()) {
+                        found = new ArrayList<>(max);
+                        while (rs.next()) {
+                            found.add(resultSetToDistance(rs));
+                        }
+                    }
+                }
+            } else {
+                found = null;
+            }
+        } catch (SQLException ex) {
+            found = null;
+            System.out.println("ERROR " + ex.toString());
+        }
+        return found;
+    }
+
     /**
      * Gets data from current registrar of result set and convert into a
      * distance object.
@@ -67,7 +137,7 @@ public class DistanceDAO {
      */
     private Distance resultSetToDistance(ResultSet rs) throws SQLException {
         int id = rs.getInt("id");
-        Double distance = rs.getDouble("distance");
+        double distance = rs.getDouble("distance");
 
         Distance distances = new Distance(id, distance);
 
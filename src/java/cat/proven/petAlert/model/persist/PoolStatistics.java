@@ -0,0 +1,136 @@
+package cat.proven.petAlert.model.persist;
+
+import com.google.gson.annotations.Expose;
+
+/**
+ * ADT PoolStatistics
+ *
+ * @author Pet Alert
+ */
+public class PoolStatistics {
+
+    /* ATTRIBUTES */
+    @Expose
+    private boolean pooled; //false if connections come from DriverManager
+    @Expose
+    private int size;
+    @Expose
+    private int active;
+    @Expose
+    private int idle;
+    @Expose
+    private int waiting;
+    @Expose
+    private int maxActive;
+    @Expose
+    private long acquired;
+    @Expose
+    private long failed;
+    @Expose
+    private double averageWaitMillis;
+    @Expose
+    private double maxWaitMillis;
+
+    /* CONSTRUCTORS */
+    public PoolStatistics() {
+    }
+
+    /* GETTERS AND SETTERS */
+    public boolean isPooled() {
+        return pooled;
+    }
+
+    public void setPooled(boolean pooled) {
+        this.pooled = pooled;
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public void setSize(int size) {
+        this.size = size;
+    }
+
+    public int getActive() {
+        return active;
+    }
+
+    public void setActive(int active) {
+        this.active = active;
+    }
+
+    public int getIdle() {
+        return idle;
+    }
+
+    public void setIdle(int idle) {
+        this.idle = idle;
+    }
+
+    public int getWaiting() {
+        return waiting;
+    }
+
+    public void setWaiting(int waiting) {
+        this.waiting = waiting;
+    }
+
+    public int getMaxActive() {
+        return maxActive;
+    }
+
+    public void setMaxActive(int maxActive) {
+        this.maxActive = maxActive;
+    }
+
+    public long getAcquired() {
+        return acquired;
+    }
+
+    public void setAcquired(long acquired) {
+        this.acquired = acquired;
+    }
+
+    public long getFailed() {
+        return failed;
+    }
+
+    public void setFailed(long failed) {
+        this.failed = failed;
+    }
+
+    public double getAverageWaitMillis() {
+        return averageWaitMillis;
+    }
+
+    public void setAverageWaitMillis(double averageWaitMillis) {
+        this.averageWaitMillis = averageWaitMillis;
+    }
+
+    public double getMaxWaitMillis() {
+        return maxWaitMillis;
+    }
+
+    public void setMaxWaitMillis(double maxWaitMillis) {
+        this.maxWaitMillis = maxWaitMillis;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("PoolStatistics{");
+        sb.append("pooled=").append(pooled);
+        sb.append(", size=").append(size);
+        sb.append(", active=").append(active);
+        sb.append(", idle=").append(idle);
+        sb.append(", waiting=").append(waiting);
+        sb.append(", maxActive=").append(maxActive);
+        sb.append(", acquired=").append(acquired);
+        sb.append(", failed=").append(failed);
+        sb.append(", averageWaitMillis=").append(averageWaitMillis);
+        sb.append(", maxWaitMillis=").append(maxWaitMillis);
+        sb.append('}');
+        return sb.toString();
+    }
+}
@@ -0,0 +1,97 @@
+package cat.proven.petAlert.model.report;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+/**
+ * In-memory queue of the active alerts reported enough times to be reviewed,
+ * ordered by report number and id like Alert.findByReportNumber. It keeps the
+ * report number of every reported active alert, set with the numbers saved
+ * by each flush of the reports and with the alerts written by the model.
+ *
+ * Each entry is a long with the report number in the high bits and the
+ * alert id in the low ones, so the skip list orders them without comparator
+ * objects and a page is read walking the list.
+ *
+ * @author Pet Alert
+ */
+public class ModerationQueue {
+
+    /* ATTRIBUTES */
+    public static final int THRESHOLD = 3; //reports to be reviewed
+    private final NavigableSet<Long> queue; //alerts with THRESHOLD or more reports
+    private final Map<Integer, Integer> reports; //alert id -> report number, if > 0
+
+    /* CONSTRUCTORS */
+    public ModerationQueue() {
+        queue = new ConcurrentSkipListSet<>();
+        reports = new ConcurrentHashMap<>();
+    }
+
+    /* METHODS */
+    /**
+     * Sets the report number of an alert.
+     *
+     * @param alertId alert id
+     * @param reportNumber reports of the alert
+     * @param active false if the alert is finished, then it leaves the queue
+     */
+    public synchronized void set(int alertId, int reportNumber, boolean active) {
+        Integer old = reports.remove(alertId);
+        if (old != null) {
+            queue.remove(entry(old, alertId));
+        }
+        if (active && reportNumber > 0) {
+            reports.put(alertId, reportNumber);
+            if (reportNumber >= THRESHOLD) {
+                queue.add(entry(reportNumber, alertId));
+            }
+        }
+    }
+
+    /**
+     * Removes an alert from the queue.
+     *
+     * @param alertId alert id
+     */
+    public void remove(int alertId) {
+        set(alertId, 0, false);
+    }
+
+    /**
+     * Reads a page of the queue.
+     *
+     * @param first position of the first alert
+     * @param max maximum number of alerts
+     * @return alert ids in queue order
+     */
+    public List<Integer> page(int first, int max) {
+        List<Integer> ids = new ArrayList<>(max);
+        Iterator<Long> it = queue.iterator();
+        for (int i = 0; i < first && it.hasNext(); i++) {
+            it.next();
+        }
+        while (ids.size() < max && it.hasNext()) {
+            ids.add((int) (long) it.next());
+        }
+        return ids;
+    }
+
+    /**
+     * Number of alerts in the queue.
+     *
+     * @return alerts to review
+     */
+    public int size() {
+        return queue.size();
+    }
+
+    private static long entry(int reportNumber, int alertId) {
+        return ((long) reportNumber << 32) | (alertId & 0xFFFFFFFFL);
+    }
+}
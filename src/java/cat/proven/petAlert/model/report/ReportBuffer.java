@@ -0,0 +1,129 @@
+package cat.proven.petAlert.model.report;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Write-behind buffer of alert reports. Reports are kept in memory and saved
+ * in database by batches, so a burst of reports of the same alert is a single
+ * update instead of one transaction per report.
+ *
+ * Each pending report is an user and alert pair, so an user can only have
+ * one pending report of an alert. The pending count of each alert is only
+ * changed inside compute of the map, and removed when it reaches zero, so a
+ * report is never counted in a removed counter.
+ *
+ * @author Pet Alert
+ */
+public class ReportBuffer {
+
+    /* ATTRIBUTES */
+    private final Set<Long> reports; //alert id and user id pairs
+    //alert id -> pending reports, only alerts with pending reports
+    private final Map<Integer, LongAdder> counts;
+
+    /* CONSTRUCTORS */
+    public ReportBuffer() {
+        reports = ConcurrentHashMap.newKeySet();
+        counts = new ConcurrentHashMap<>();
+    }
+
+    /* METHODS */
+    /**
+     * Adds a report.
+     *
+     * @param alertId reported alert
+     * @param userId user reporting the alert
+     * @return false if the user already has a pending report of the alert.
+     */
+    public boolean add(int alertId, int userId) {
+        //counted before it can be drained, so flushed always finds the counter
+        counts.compute(alertId, (k, c) -> {
+            LongAdder count = c != null ? c : new LongAdder();
+            count.increment();
+            return count;
+        });
+        boolean added = reports.add(pair(alertId, userId));
+        if (!added) {
+            decrement(alertId);
+        }
+        return added;
+    }
+
+    /**
+     * Number of reports of an alert not saved yet.
+     *
+     * @param alertId alert id
+     * @return pending reports
+     */
+    public long pending(int alertId) {
+        LongAdder count = counts.get(alertId);
+        return count != null ? count.sum() : 0;
+    }
+
+    /**
+     * Takes the pending reports to save them. They are still counted as
+     * pending until they are flushed.
+     *
+     * @return alert id and user id pairs, see alertId and userId
+     */
+    public long[] drain() {
+        long[] drained = new long[reports.size()];
+        int n = 0;
+        Iterator<Long> it = reports.iterator();
+        while (it.hasNext() && n < drained.length) {
+            drained[n++] = it.next();
+            it.remove();
+        }
+        return n == drained.length ? drained : Arrays.copyOf(drained, n);
+    }
+
+    /**
+     * Stops counting reports once they are saved.
+     *
+     * @param drained pairs returned by drain
+     */
+    public void flushed(long[] drained) {
+        for (long report : drained) {
+            decrement(alertId(report));
+        }
+    }
+
+    /**
+     * Gives back reports that could not be saved, to try again later.
+     *
+     * @param drained pairs returned by drain
+     */
+    public void restore(long[] drained) {
+        for (long report : drained) {
+            reports.add(report);
+        }
+    }
+
+    /**
+     * Uncounts a report, removing the counter when there are no more pending
+     * reports of the alert.
+     */
+    private void decrement(int alertId) {
+        counts.computeIfPresent(alertId, (k, c) -> {
+            c.decrement();
+            return c.sum() == 0 ? null : c;
+        });
+    }
+
+    public static long pair(int alertId, int userId) {
+        return ((long) alertId << 32) | (userId & 0xFFFFFFFFL);
+    }
+
+    public static int alertId(long pair) {
+        return (int) (pair >>> 32);
+    }
+
+    public static int userId(long pair) {
+        return (int) pair;
+    }
+}
@@ -15,6 +15,7 @@ public class AuthToken {
     private String username;
     private Date expiration;
     private String sourceIP;
+    private int userId;
 
     /* CONSTRUCTORS */
     public AuthToken(String token, String username, Date expiration, String sourceIP) {
@@ -64,6 +65,14 @@ public class AuthToken {
         this.sourceIP = sourceIP;
     }
 
+    public int getUserId() {
+        return userId;
+    }
+
+    public void setUserId(int userId) {
+        this.userId = userId;
+    }
+
     @Override
     public int hashCode() {
         int hash = 5;
@@ -97,6 +106,7 @@ public class AuthToken {
         sb.append(", username=").append(username);
         sb.append(", expiration=").append(expiration);
         sb.append(", sourceIP=").append(sourceIP);
+        sb.append(", userId=").append(userId);
         sb.append('}');
         return  sb.toString();
     }
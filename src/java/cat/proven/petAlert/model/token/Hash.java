@@ -19,9 +19,20 @@ public class Hash {
      * @return hash in hashType
      */
     public static String getHash(String txt, String hashType) {
+        return getHash(txt.getBytes(), hashType);
+    }
+
+    /**
+     * Encrypt the bytes received with the indicated hash function.
+     *
+     * @param data, bytes to hash
+     * @param hashType MD5 OR SHA1 to encript
+     * @return hash in hashType
+     */
+    public static String getHash(byte[] data, String hashType) {
         try {
             MessageDigest md = java.security.MessageDigest.getInstance(hashType);
-            byte[] array = md.digest(txt.getBytes());
+            byte[] array = md.digest(data);
             StringBuilder sb = new StringBuilder();
             for (int i = 0; i < array.length; ++i) {
                 sb.append(Integer.toHexString((array[i] & 0xFF) | 0x100).substring(1, 3));
@@ -42,6 +53,16 @@ public class Hash {
         return Hash.getHash(txt, "MD5");
     }
 
+    /**
+     * Call getHash with MD5 hast type.
+     *
+     * @param data bytes to hash
+     * @return hash in hashType
+     */
+    public static String md5(byte[] data) {
+        return Hash.getHash(data, "MD5");
+    }
+
     /**
      * Call getHash with SHA1 hast type.
      *
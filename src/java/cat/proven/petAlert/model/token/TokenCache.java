@@ -0,0 +1,117 @@
+package cat.proven.petAlert.model.token;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-memory cache of user tokens, so authenticated requests do not need to
+ * look for the user in database.
+ *
+ * @author Pet Alert
+ */
+public class TokenCache {
+
+    /* ATTRIBUTES */
+    private static final long TTL = 10 * 60 * 1000; //10 minutes in cache
+    private static final long VALIDITY = 24 * 3600 * 1000; //24 hours token life
+    private static final int PURGE_SIZE = 10000; //entries before purging
+    private final Map<String, Entry> entries;
+
+    /* CONSTRUCTORS */
+    public TokenCache() {
+        entries = new ConcurrentHashMap<>();
+    }
+
+    /* METHODS */
+    /**
+     * Looks for a token in cache.
+     *
+     * @param token to search
+     * @return the token or null if it is not cached or its entry is too old.
+     */
+    public AuthToken get(String token) {
+        AuthToken found = null;
+        Entry entry = entries.get(token);
+        if (entry != null) {
+            if (entry.isAlive(System.currentTimeMillis())) {
+                found = entry.token;
+            } else {
+                entries.remove(token, entry);
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Adds a token to the cache.
+     *
+     * @param token to add, with user id and expiration.
+     */
+    public void put(AuthToken token) {
+        if (entries.size() >= PURGE_SIZE) {
+            purge();
+        }
+        entries.put(token.getToken(), new Entry(token, System.currentTimeMillis()));
+    }
+
+    /**
+     * Removes a token from the cache.
+     *
+     * @param token to remove
+     */
+    public void remove(String token) {
+        if (token != null) {
+            entries.remove(token);
+        }
+    }
+
+    /**
+     * Removes all the tokens of an user.
+     *
+     * @param userId user primary key
+     */
+    public void removeUser(int userId) {
+        Iterator<Entry> it = entries.values().iterator();
+        while (it.hasNext()) {
+            if (it.next().token.getUserId() == userId) {
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * Removes the entries that are too old.
+     */
+    private void purge() {
+        long now = System.currentTimeMillis();
+        Iterator<Entry> it = entries.values().iterator();
+        while (it.hasNext()) {
+            if (!it.next().isAlive(now)) {
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * Cached token and the time it was cached.
+     */
+    private static class Entry {
+
+        private final AuthToken token;
+        private final long cachedAt;
+
+        Entry(AuthToken token, long cachedAt) {
+            this.token = token;
+            this.cachedAt = cachedAt;
+        }
+
+        boolean isAlive(long now) {
+            boolean alive = now - cachedAt < TTL;
+            if (alive && token.getExpiration() != null) {
+                alive = now < token.getExpiration().getTime() + VALIDITY;
+            }
+            return alive;
+        }
+    }
+}
@@ -25,9 +25,12 @@ public class ApplicationConfig extends Application {
      * out calling this method in getClasses().
      */
     private void addRestResourceClasses(Set<Class<?>> resources) {
+        resources.add(cat.proven.petAlert.restful.GsonProvider.class);
         resources.add(cat.proven.petAlert.restful.services.AlertsService.class);
+        resources.add(cat.proven.petAlert.restful.services.AnimalsService.class);
         resources.add(cat.proven.petAlert.restful.services.LoginService.class);
         resources.add(cat.proven.petAlert.restful.services.MessagesService.class);
+        resources.add(cat.proven.petAlert.restful.services.StatsService.class);
         resources.add(cat.proven.petAlert.restful.services.UserService.class);
     }
 }
@@ -0,0 +1,118 @@
+package cat.proven.petAlert.restful;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+
+/**
+ * Runs the resource methods out of the connector threads. The request is
+ * suspended and the method runs in a bounded executor, so a slow database
+ * query or image load does not keep a Tomcat worker thread blocked.
+ *
+ * With Java 21 or later each request runs in a virtual thread, limited by
+ * the number of pending requests, otherwise in a fixed pool of platform
+ * threads with a bounded queue. Requests over the limit get 503, as queries
+ * that take longer than the timeout; changes have no timeout.
+ *
+ * @author Pet Alert
+ */
+public class AsyncRequests {
+
+    /* ATTRIBUTES */
+    private static final int THREADS = 32; //platform threads
+    private static final int MAX_PENDING = 1000; //requests waiting or running
+    private static final long TIMEOUT = 30; //seconds before answering 503
+    private static final Semaphore PENDING = new Semaphore(MAX_PENDING);
+    private static final ExecutorService EXECUTOR = createExecutor();
+
+    /* METHODS */
+    /**
+     * Runs a query in the executor and resumes the response with its result.
+     * After the timeout the client gets 503 and the query is not started if
+     * it is still waiting; a query already running ends and its result is
+     * discarded, because resume does nothing once the response is done.
+     *
+     * @param async suspended response of the request
+     * @param task resource method body, returns the response entity
+     */
+    public static void resume(final AsyncResponse async, final Callable<?> task) {
+        async.setTimeout(TIMEOUT, TimeUnit.SECONDS);
+        async.setTimeoutHandler(r -> r.resume(unavailable("Timeout")));
+        submit(async, task);
+    }
+
+    /**
+     * Runs a change in the executor and resumes the response with its result.
+     * There is no timeout: answering 503 while the change can still be
+     * committed would make the client retry it and apply it twice.
+     *
+     * @param async suspended response of the request
+     * @param task resource method body, returns the response entity
+     */
+    public static void update(final AsyncResponse async, final Callable<?> task) {
+        submit(async, task);
+    }
+
+    private static void submit(final AsyncResponse async, final Callable<?> task) {
+        if (PENDING.tryAcquire()) {
+            try {
+                EXECUTOR.execute(() -> {
+                    try {
+                        if (!async.isDone()) { //not timed out while waiting
+                            async.resume(task.call());
+                        }
+                    } catch (Exception ex) {
+                        async.resume(ex); //mapped to an error response by the container
+                    } finally {
+                        PENDING.release();
+                    }
+                });
+            } catch (RejectedExecutionException ex) {
+                PENDING.release();
+                async.resume(unavailable("Server busy"));
+            }
+        } else {
+            async.resume(unavailable("Server busy"));
+        }
+    }
+
+    private static Response unavailable(String message) {
+        return Response.status(Response.Status.SERVICE_UNAVAILABLE)
+                .entity(new RequestResult(message, -1))
+                .type(MediaType.APPLICATION_JSON).build();
+    }
+
+    /**
+     * Virtual thread per task executor if the runtime has it, looked up by
+     * reflection because the project is compiled for Java 8.
+     *
+     * @return executor for the requests
+     */
+    private static ExecutorService createExecutor() {
+        ExecutorService executor;
+        try {
+            Method virtual = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            executor = (ExecutorService) virtual.invoke(null);
+        } catch (ReflectiveOperationException ex) {
+            final AtomicInteger count = new AtomicInteger();
+            //the semaphore already bounds the queue, the pool never rejects
+            executor = new ThreadPoolExecutor(THREADS, THREADS, 60, TimeUnit.SECONDS,
+                    new ArrayBlockingQueue<>(MAX_PENDING), r -> {
+                        Thread t = new Thread(r, "rest-" + count.incrementAndGet());
+                        t.setDaemon(true);
+                        return t;
+                    });
+        }
+        return executor;
+    }
+}
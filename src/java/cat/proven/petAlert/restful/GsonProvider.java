@@ -0,0 +1,93 @@
+package cat.proven.petAlert.restful;
+
+import cat.proven.petAlert.model.Alert;
+import cat.proven.petAlert.model.Animal;
+import cat.proven.petAlert.model.Coordinate;
+import cat.proven.petAlert.model.Description;
+import cat.proven.petAlert.model.Distance;
+import cat.proven.petAlert.model.Message;
+import cat.proven.petAlert.model.User;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import javax.ws.rs.Produces;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.ext.MessageBodyWriter;
+import javax.ws.rs.ext.Provider;
+
+/**
+ * Writes RequestResult responses as Json straight to the response stream.
+ * Gson instances are thread-safe and cache their type adapters, so they are
+ * created once and shared by all the services.
+ *
+ * @author Pet Alert
+ */
+@Provider
+@Produces(MediaType.APPLICATION_JSON)
+public class GsonProvider implements MessageBodyWriter<RequestResult> {
+
+    /* ATTRIBUTES */
+    //exclude fields object without @Expose annotation
+    private static final Gson EXPOSED = new GsonBuilder().excludeFieldsWithoutExposeAnnotation().create();
+    //reads every field sent by the clients
+    private static final Gson PARSER = new Gson();
+
+    static {
+        //build the reflective type adapters before the first request
+        Class<?>[] types = {RequestResult.class, Alert.class, Animal.class, Coordinate.class,
+            Description.class, Distance.class, Message.class, User.class};
+        for (Class<?> type : types) {
+            EXPOSED.getAdapter(type);
+            PARSER.getAdapter(type);
+        }
+    }
+
+    /* METHODS */
+    /**
+     * Gson for responses, only writes fields with @Expose annotation.
+     *
+     * @return shared Gson instance
+     */
+    public static Gson exposed() {
+        return EXPOSED;
+    }
+
+    /**
+     * Gson for request parameters.
+     *
+     * @return shared Gson instance
+     */
+    public static Gson parser() {
+        return PARSER;
+    }
+
+    @Override
+    public boolean isWriteable(Class<?> type, Type genericType, Annotation[] annotations,
+            MediaType mediaType) {
+        return RequestResult.class.isAssignableFrom(type);
+    }
+
+    @Override
+    public long getSize(RequestResult result, Class<?> type, Type genericType,
+            Annotation[] annotations, MediaType mediaType) {
+        return -1; //unknown, the body is streamed
+    }
+
+    @Override
+    public void writeTo(RequestResult result, Class<?> type, Type genericType,
+            Annotation[] annotations, MediaType mediaType,
+            MultivaluedMap<String, Object> httpHeaders, OutputStream entityStream)
+            throws IOException, WebApplicationException {
+        Writer writer = new OutputStreamWriter(entityStream, StandardCharsets.UTF_8);
+        EXPOSED.toJson(result, RequestResult.class, writer);
+        writer.flush();
+    }
+}
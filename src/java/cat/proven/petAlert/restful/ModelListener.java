@@ -0,0 +1,34 @@
+package cat.proven.petAlert.restful;
+
+import cat.proven.petAlert.logger.ServerLogger;
+import cat.proven.petAlert.model.Model;
+import javax.servlet.ServletContext;
+import javax.servlet.ServletContextEvent;
+import javax.servlet.ServletContextListener;
+import javax.servlet.annotation.WebListener;
+
+/**
+ * Creates the Model and ServerLogger shared by all the services when the
+ * application starts, and closes the Model when it stops.
+ *
+ * @author Pet Alert
+ */
+@WebListener
+public class ModelListener implements ServletContextListener {
+
+    @Override
+    public void contextInitialized(ServletContextEvent sce) {
+        ServletContext context = sce.getServletContext();
+        ServerLogger logger = new ServerLogger();
+        context.setAttribute("logger", logger);
+        context.setAttribute("model", new Model(logger));
+    }
+
+    @Override
+    public void contextDestroyed(ServletContextEvent sce) {
+        Model model = (Model) sce.getServletContext().getAttribute("model");
+        if (model != null) {
+            model.close();
+        }
+    }
+}
@@ -14,6 +14,8 @@ public class RequestResult {
     private Object data;
     @Expose
     private int resultCode;
+    @Expose
+    private String cursor; //next page, null if there are no more pages
 
     /* CONSTRUCTORS */
     public RequestResult(Object data, int resultCode) {
@@ -21,6 +23,12 @@ public class RequestResult {
         this.resultCode = resultCode;
     }
 
+    public RequestResult(Object data, int resultCode, String cursor) {
+        this.data = data;
+        this.resultCode = resultCode;
+        this.cursor = cursor;
+    }
+
     /* GETTERS AND SETTERS */
     public Object getData() {
         return data;
@@ -38,12 +46,21 @@ public class RequestResult {
         this.resultCode = resultCode;
     }
 
+    public String getCursor() {
+        return cursor;
+    }
+
+    public void setCursor(String cursor) {
+        this.cursor = cursor;
+    }
+
     @Override
     public String toString() {
         StringBuilder sb = new StringBuilder();
         sb.append("RequestResult{");
         sb.append("data=").append(data);
         sb.append(", resultCode=").append(resultCode);
+        sb.append(", cursor=").append(cursor);
         sb.append('}');
         return sb.toString();
     }
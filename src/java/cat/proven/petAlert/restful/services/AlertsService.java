@@ -2,15 +2,22 @@ package cat.proven.petAlert.restful.services;
 
 import cat.proven.petAlert.logger.ServerLogger;
 import cat.proven.petAlert.model.Alert;
+import cat.proven.petAlert.model.AlertPatch;
 import cat.proven.petAlert.model.Distance;
+import cat.proven.petAlert.model.ItemResult;
 import cat.proven.petAlert.model.Model;
-import cat.proven.petAlert.model.User;
+import cat.proven.petAlert.model.token.AuthToken;
+import cat.proven.petAlert.restful.AsyncRequests;
+import cat.proven.petAlert.restful.GsonProvider;
+import cat.proven.petAlert.restful.PATCH;
 import cat.proven.petAlert.restful.RequestResult;
-import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
+import com.google.gson.JsonParseException;
 import com.google.gson.JsonSyntaxException;
-import java.sql.Timestamp;
-import java.time.Instant;
+import com.google.gson.stream.JsonReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
@@ -19,10 +26,14 @@ import javax.servlet.ServletContext;
 import javax.ws.rs.Consumes;
 import javax.ws.rs.FormParam;
 import javax.ws.rs.GET;
+import javax.ws.rs.HeaderParam;
 import javax.ws.rs.POST;
 import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
+import javax.ws.rs.QueryParam;
 import javax.ws.rs.Produces;
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.container.Suspended;
 import javax.ws.rs.core.Context;
 import javax.ws.rs.core.MediaType;
 
@@ -36,73 +47,48 @@ public class AlertsService {
 
     private Model model;
     private ServerLogger logger;
-    private Gson gson;
     private final int sec = 3600 * 24; //24 hours
+    private static final int PAGE_SIZE = 5; //alerts per page
+    private static final int BATCH_CHUNK = 100; //alerts per transaction in batch imports
+    private static final int MAX_BATCH_CHUNK = 1000;
 
     /**
-     * Constructor. It gets a reference to the Model and ServerLogger, saves it
-     * in the application context to
+     * Constructor. It gets a reference to the Model and ServerLogger of the
+     * application context, created by ModelListener.
      *
      * @param context the application context
      */
     public AlertsService(@Context ServletContext context) {
-        if (context.getAttribute("model") != null) {
-            logger = (ServerLogger) context.getAttribute("logger");
-            model = (Model) context.getAttribute("model");
-        } else {
-            logger = new ServerLogger();
-            model = new Model(logger);
-            context.setAttribute("logger", logger);
-            context.setAttribute("model", model);
-        }
+        logger = (ServerLogger) context.getAttribute("logger");
+        model = (Model) context.getAttribute("model");
     }
 
     /**
      * Shows all alerts of five on five.
      *
      * @param number from the position to be displayed
-     * @return Json with list of alerts and result code. Code: 1 OK, 0 No
-     * results, -1 Error
+     * @param cursor continuation cursor of the previous page, if present the
+     * number is ignored
+     * @param async suspended response, resumed with the result
+     * @return Json with list of alerts, result code and cursor of the next
+     * page. Code: 1 OK, 0 No results, -1 Error
      */
     @GET
     @Path("/all/{number}")
     @Produces(MediaType.APPLICATION_JSON)
-    public String showAlerts(@PathParam("number") String number) {
-        List<Alert> alerts;
-        List<Alert> shortAlerts = new ArrayList<>();
-        //exclude fields object without @Expose annotation
-        gson = new GsonBuilder().excludeFieldsWithoutExposeAnnotation().create();
-        RequestResult result;
-        try {
-            int n = Integer.parseInt(number); //n = list position
-            int listSize;
-            alerts = model.findAllAlerts(); //alerts in database
-            if (alerts != null) {
-                if (!alerts.isEmpty()) {
-                    if (n > alerts.size()) { //if n is greater than five
-                        result = new RequestResult("No results", 0);
-                    } else {
-                        if (alerts.size() < n + 5) { //if the rest is less than five
-                            listSize = alerts.size();
-                        } else { //five alerts
-                            listSize = n + 5;
-                        }
-                        for (int i = n; i < listSize; i++) {
-                            shortAlerts.add(alerts.get(i)); //saves alerts from the given position
-                        }
-                        result = new RequestResult(shortAlerts, 1);
-                    }
-                } else {
-                    result = new RequestResult("No results", 0);
-                }
-            } else {
-                result = new RequestResult("Database error", -1);
+    public void showAlerts(@PathParam("number") String number,
+            @QueryParam("cursor") String cursor, @Suspended final AsyncResponse async) {
+        AsyncRequests.resume(async, () -> {
+            RequestResult result;
+            try {
+                int n = parsePosition(number); //n = list position
+                result = pageResult(model.findAllAlerts(n, PAGE_SIZE, parseCursor(cursor)));
+            } catch (IllegalStateException | JsonSyntaxException | NumberFormatException ex) {
+                result = new RequestResult("Error", -1);
+                logger.getLogger().log(Level.SEVERE, ex.getMessage());
             }
-        } catch (IllegalStateException | JsonSyntaxException | NumberFormatException ex) {
-            result = new RequestResult("Error", -1);
-            logger.getLogger().log(Level.SEVERE, ex.getMessage());
-        }
-        return gson.toJson(result);
+            return result;
+        });
     }
 
     /**
@@ -111,83 +97,81 @@ public class AlertsService {
      * @param latitude north south position
      * @param longitude east west position
      * @param number from the position to be displayed
+     * @param radius optional maximum distance in km
+     * @param async suspended response, resumed with the result
      * @return Json with list of alerts and result code. Code: 1 OK, 0 No
      * results, -1 Error
      */
     @GET
     @Path("/distance/{latitude}/{longitude}/{number}")
     @Produces(MediaType.APPLICATION_JSON)
-    public String showAlertsByDistance(@PathParam("latitude") String latitude,
-            @PathParam("longitude") String longitude, @PathParam("number") String number) {
-        List<Distance> distances;
-        List<Alert> shortAlerts = new ArrayList<>();
-        RequestResult result;
-        List<Alert> alerts;
-        //exclude fields object without @Expose annotation
-        gson = new GsonBuilder().excludeFieldsWithoutExposeAnnotation().create();
-        try {
-            int n = Integer.parseInt(number); //n = list position
-            int listSize;
-            distances = model.findAlertsByCoordinates(Double.parseDouble(latitude),
-                    Double.parseDouble(longitude)); //id alerts order by distance
-            alerts = model.findAllAlerts(); //alerts in database
-            if (distances != null && alerts != null) {
-                if (!distances.isEmpty()) {
-                    if (n > alerts.size()) { //if n is greater than five
-                        result = new RequestResult("No results", 0);
+    public void showAlertsByDistance(@PathParam("latitude") String latitude,
+            @PathParam("longitude") String longitude, @PathParam("number") String number,
+            @QueryParam("radius") String radius, @Suspended final AsyncResponse async) {
+        AsyncRequests.resume(async, () -> {
+            List<Distance> distances;
+            RequestResult result;
+            List<Alert> alerts = null;
+            try {
+                int n = parsePosition(number); //n = list position
+                double km = radius != null ? Double.parseDouble(radius) : Double.POSITIVE_INFINITY;
+                if (!(km > 0)) {
+                    throw new NumberFormatException("Radius must be positive: " + radius);
+                }
+                distances = model.findAlertsByCoordinates(Double.parseDouble(latitude),
+                        Double.parseDouble(longitude), km, n, PAGE_SIZE); //id alerts order by distance
+                if (distances != null) {
+                    List<Integer> ids = new ArrayList<>(distances.size());
+                    for (Distance distance : distances) {
+                        ids.add(distance.getId());
+                    }
+                    alerts = model.findAlertsByIds(ids); //alerts of the page in distance order
+                }
+                if (alerts != null) {
+                    if (!alerts.isEmpty()) {
+                        result = new RequestResult(alerts, 1);
                     } else {
-                        if (distances.size() < n + 5) { //if the rest is less than five
-                            listSize = distances.size();
-                        } else { //five alerts
-                            listSize = n + 5;
-                        }
-                        for (int i = n; i < listSize; i++) {
-                            int x = distances.get(i).getId();
-                            int index = alerts.indexOf(new Alert(x));
-                            shortAlerts.add(alerts.get(index)); //saves alerts from the given position
-                        }
-                        result = new RequestResult(shortAlerts, 1);
+                        result = new RequestResult("No results", 0);
                     }
                 } else {
-                    result = new RequestResult("No results", 0);
+                    result = new RequestResult("Database error", -1);
                 }
-            } else {
-                result = new RequestResult("Database error", -1);
+            } catch (IllegalStateException | JsonSyntaxException | NumberFormatException ex) {
+                result = new RequestResult("Error in parameters", -1);
+                logger.getLogger().log(Level.SEVERE, ex.getMessage());
             }
-        } catch (IllegalStateException | JsonSyntaxException | NumberFormatException ex) {
-            result = new RequestResult("Error in parameters", -1);
-            logger.getLogger().log(Level.SEVERE, ex.getMessage());
-        }
-        return gson.toJson(result);
+            return result;
+        });
     }
 
     /**
      * Show alert by id.
      *
      * @param id to filter
+     * @param async suspended response, resumed with the result
      * @return Json with alert and result code. Code: 1 OK, 0 No results, -1
      * Error
      */
     @GET
     @Path("/{id}")
     @Produces(MediaType.APPLICATION_JSON)
-    public String showAlertsById(@PathParam("id") String id) {
-        Alert alert;
-        RequestResult result;
-        //exclude fields object without @Expose annotation
-        gson = new GsonBuilder().excludeFieldsWithoutExposeAnnotation().create();
-        try {
-            alert = model.findAlertById(Integer.parseInt(id)); //retrieve alert from database
-            if (alert != null) {
-                result = new RequestResult(alert, 1);
-            } else {
-                result = new RequestResult("Alert ID doesnt exist", 0);
+    public void showAlertsById(@PathParam("id") String id, @Suspended final AsyncResponse async) {
+        AsyncRequests.resume(async, () -> {
+            Alert alert;
+            RequestResult result;
+            try {
+                alert = model.findAlertById(Integer.parseInt(id)); //retrieve alert from database
+                if (alert != null) {
+                    result = new RequestResult(alert, 1);
+                } else {
+                    result = new RequestResult("Alert ID doesnt exist", 0);
+                }
+            } catch (IllegalStateException | JsonSyntaxException | NumberFormatException ex) {
+                result = new RequestResult("Error in parameters", -1);
+                logger.getLogger().log(Level.SEVERE, ex.getMessage());
             }
-        } catch (IllegalStateException | JsonSyntaxException | NumberFormatException ex) {
-            result = new RequestResult("Error in parameters", -1);
-            logger.getLogger().log(Level.SEVERE, ex.getMessage());
-        }
-        return gson.toJson(result);
+            return result;
+        });
     }
 
     /**
@@ -195,49 +179,30 @@ public class AlertsService {
      *
      * @param kind animal kind, dog, cat or other
      * @param number from the position to be displayed
-     * @return Json with list of alerts and result code. Code: 1 OK, 0 No
-     * results, -1 Error
+     * @param cursor continuation cursor of the previous page, if present the
+     * number is ignored
+     * @param async suspended response, resumed with the result
+     * @return Json with list of alerts, result code and cursor of the next
+     * page. Code: 1 OK, 0 No results, -1 Error
      */
     @GET
     @Path("/animal/{kind}/{number}")
     @Produces(MediaType.APPLICATION_JSON)
-    public String showAlertsByAnimalKind(@PathParam("kind") String kind,
-            @PathParam("number") String number) {
-        //POR AQUÍ que devuelva de 5 en 5
-        List<Alert> alerts;
-        List<Alert> shortAlerts = new ArrayList<>();
-        RequestResult result;
-        gson = new GsonBuilder().excludeFieldsWithoutExposeAnnotation().create();
-        try {
-            int n = Integer.parseInt(number); //n = list position
-            int listSize;
-            alerts = model.findAlertsByAnimalKind(kind);
-            if (alerts != null) {
-                if (!alerts.isEmpty()) {
-                    if (n > alerts.size()) { //if n is greater than five
-                        result = new RequestResult("No results", 0);
-                    } else {
-                        if (alerts.size() < n + 5) { //if the rest is less than five
-                            listSize = alerts.size();
-                        } else { //five alerts
-                            listSize = n + 5;
-                        }
-                        for (int i = n; i < listSize; i++) {
-                            shortAlerts.add(alerts.get(i)); //saves alerts from the given position
-                        }
-                        result = new RequestResult(shortAlerts, 1);
-                    }
-                } else {
-                    result = new RequestResult("No results", 0);
-                }
-            } else {
-                result = new RequestResult("Database error", -1);
+    public void showAlertsByAnimalKind(@PathParam("kind") String kind,
+            @PathParam("number") String number, @QueryParam("cursor") String cursor,
+            @Suspended final AsyncResponse async) {
+        AsyncRequests.resume(async, () -> {
+            RequestResult result;
+            try {
+                int n = parsePosition(number); //n = list position
+                result = pageResult(model.findAlertsByAnimalKind(kind, n, PAGE_SIZE,
+                        parseCursor(cursor)));
+            } catch (IllegalStateException | JsonSyntaxException | NumberFormatException ex) {
+                result = new RequestResult("Error in parameters", -1);
+                logger.getLogger().log(Level.SEVERE, ex.getMessage());
             }
-        } catch (IllegalStateException | JsonSyntaxException | NumberFormatException ex) {
-            result = new RequestResult("Error in parameters", -1);
-            logger.getLogger().log(Level.SEVERE, ex.getMessage());
-        }
-        return gson.toJson(result);
+            return result;
+        });
     }
 
     /**
@@ -246,48 +211,30 @@ public class AlertsService {
      * @param kind animal kind, dog, cat or other
      * @param race animal race to filter
      * @param number from the position to be displayed
-     * @return Json with list of alerts and result code. Code: 1 OK, 0 No
-     * results, -1 Error
+     * @param cursor continuation cursor of the previous page, if present the
+     * number is ignored
+     * @param async suspended response, resumed with the result
+     * @return Json with list of alerts, result code and cursor of the next
+     * page. Code: 1 OK, 0 No results, -1 Error
      */
     @GET
     @Path("/animal/{kind}/race/{race}/{number}")
     @Produces(MediaType.APPLICATION_JSON)
-    public String showAlertsByAnimalKindAndRace(@PathParam("kind") String kind,
-            @PathParam("race") String race, @PathParam("number") String number) {
-        List<Alert> alerts;
-        List<Alert> shortAlerts = new ArrayList<>();
-        RequestResult result;
-        gson = new GsonBuilder().excludeFieldsWithoutExposeAnnotation().create();
-        try {
-            int n = Integer.parseInt(number); //n = list position
-            int listSize;
-            alerts = model.findAlertsByAnimalKindAndRace(kind, race);
-            if (alerts != null) {
-                if (!alerts.isEmpty()) {
-                    if (n > alerts.size()) { //if n is greater than five
-                        result = new RequestResult("No results", 0);
-                    } else {
-                        if (alerts.size() < n + 5) { //if the rest is less than five
-                            listSize = alerts.size();
-                        } else { //five alerts
-                            listSize = n + 5;
-                        }
-                        for (int i = n; i < listSize; i++) {
-                            shortAlerts.add(alerts.get(i)); //saves alerts from the given position
-                        }
-                        result = new RequestResult(shortAlerts, 1);
-                    }
-                } else {
-                    result = new RequestResult("No results", 0);
-                }
-            } else {
-                result = new RequestResult("Database error", -1);
+    public void showAlertsByAnimalKindAndRace(@PathParam("kind") String kind,
+            @PathParam("race") String race, @PathParam("number") String number,
+            @QueryParam("cursor") String cursor, @Suspended final AsyncResponse async) {
+        AsyncRequests.resume(async, () -> {
+            RequestResult result;
+            try {
+                int n = parsePosition(number); //n = list position
+                result = pageResult(model.findAlertsByAnimalKindAndRace(kind, race, n, PAGE_SIZE,
+                        parseCursor(cursor)));
+            } catch (IllegalStateException | JsonSyntaxException | NumberFormatException ex) {
+                result = new RequestResult("Error in parameters", -1);
+                logger.getLogger().log(Level.SEVERE, ex.getMessage());
             }
-        } catch (IllegalStateException | JsonSyntaxException | NumberFormatException ex) {
-            result = new RequestResult("Error in parameters", -1);
-            logger.getLogger().log(Level.SEVERE, ex.getMessage());
-        }
-        return gson.toJson(result);
+            return result;
+        });
     }
 
     /**
@@ -297,96 +244,61 @@ public class AlertsService {
      * @param race animal race to filter
      * @param sex animal sex to filter
      * @param number from the position to be displayed
-     * @return Json with list of alerts and result code. Code: 1 OK, 0 No
-     * results, -1 Error
+     * @param cursor continuation cursor of the previous page, if present the
+     * number is ignored
+     * @param async suspended response, resumed with the result
+     * @return Json with list of alerts, result code and cursor of the next
+     * page. Code: 1 OK, 0 No results, -1 Error
      */
     @GET
     @Path("/animal/{kind}/race/{race}/sex/{sex}/{number}")
     @Produces(MediaType.APPLICATION_JSON)
-    public String showAlertsByAnimalKindRaceAndSex(@PathParam("kind") String kind,
+    public void showAlertsByAnimalKindRaceAndSex(@PathParam("kind") String kind,
             @PathParam("race") String race, @PathParam("sex") String sex,
-            @PathParam("number") String number) {
-        List<Alert> alerts;
-        RequestResult result;
-        List<Alert> shortAlerts = new ArrayList<>();
-        gson = new GsonBuilder().excludeFieldsWithoutExposeAnnotation().create();
-        try {
-            int n = Integer.parseInt(number); //n = list position
-            int listSize;
-            alerts = model.findAlertsByAnimalKindRaceAndSex(kind, race, sex);
-            if (alerts != null) {
-                if (!alerts.isEmpty()) {
-                    if (n > alerts.size()) { //if n is greater than five
-                        result = new RequestResult("No results", 0);
-                    } else {
-                        if (alerts.size() < n + 5) { //if the rest is less than five
-                            listSize = alerts.size();
-                        } else { //five alerts
-                            listSize = n + 5;
-                        }
-                        for (int i = n; i < listSize; i++) {
-                            shortAlerts.add(alerts.get(i)); //saves alerts from the given position
-                        }
-                        result = new RequestResult(shortAlerts, 1);
-                    }
-                } else {
-                    result = new RequestResult("No results", 0);
-                }
-            } else {
-                result = new RequestResult("Database error", -1);
+            @PathParam("number") String number, @QueryParam("cursor") String cursor,
+            @Suspended final AsyncResponse async) {
+        AsyncRequests.resume(async, () -> {
+            RequestResult result;
+            try {
+                int n = parsePosition(number); //n = list position
+                result = pageResult(model.findAlertsByAnimalKindRaceAndSex(kind, race, sex, n,
+                        PAGE_SIZE, parseCursor(cursor)));
+            } catch (IllegalStateException | JsonSyntaxException | NumberFormatException ex) {
+                result = new RequestResult("Error in parameters", -1);
+                logger.getLogger().log(Level.SEVERE, ex.getMessage());
             }
-        } catch (IllegalStateException | JsonSyntaxException | NumberFormatException ex) {
-            result = new RequestResult("Error in parameters", -1);
-            logger.getLogger().log(Level.SEVERE, ex.getMessage());
-        }
-        return gson.toJson(result);
+            return result;
+        });
     }
 
     /**
      * Show alerts reported 3 or more times.
      *
      * @param number from the position to be displayed
-     * @return Json with list of alerts and result code. Code: 1 OK, 0 No
-     * results, -1 Error
+     * @param async suspended response, resumed with the result
+     * @return Json with list of alerts, result code and cursor of the next
+     * page. Code: 1 OK, 0 No results, -1 Error
      */
     @GET
     @Path("/reported/{number}")
     @Produces(MediaType.APPLICATION_JSON)
-    public String showAlertsByReport(@PathParam("number") String number) {
-        List<Alert> alerts;
-        RequestResult result;
-        List<Alert> shortAlerts = new ArrayList<>();
-        gson = new GsonBuilder().excludeFieldsWithoutExposeAnnotation().create();
-        try {
-            int n = Integer.parseInt(number); //n = list position
-            int listSize;
-            alerts = model.findAlertsByReport();
-            if (alerts != null) {
-                if (!alerts.isEmpty()) {
-                    if (n > alerts.size()) { //if n is greater than five
-                        result = new RequestResult("No results", 0);
-                    } else {
-                        if (alerts.size() < n + 5) { //if the rest is less than five
-                            listSize = alerts.size();
-                        } else { //five alerts
-                            listSize = n + 5;
-                        }
-                        for (int i = n; i < listSize; i++) {
-                            shortAlerts.add(alerts.get(i)); //saves alerts from the given position
-                        }
-                        result = new RequestResult(shortAlerts, 1);
-                    }
-                } else {
-                    result = new RequestResult("No results", 0);
+    public void showAlertsByReport(@PathParam("number") String number,
+            @Suspended final AsyncResponse async) {
+        AsyncRequests.resume(async, () -> {
+            RequestResult result;
+            try {
+                int n = parsePosition(number); //n = list position
+                result = pageResult(model.findAlertsByReport(n, PAGE_SIZE));
+                if (result.getCursor() != null) {
+                    //ordered by report number, the next page is a position
+                    result.setCursor(String.valueOf(n + PAGE_SIZE));
                 }
-            } else {
-                result = new RequestResult("Database error", -1);
+            } catch (IllegalStateException | JsonSyntaxException | NumberFormatException ex) {
+                result = new RequestResult("Error in parameters", -1);
+                logger.getLogger().log(Level.SEVERE, ex.getMessage());
             }
-        } catch (IllegalStateException | JsonSyntaxException | NumberFormatException ex) {
-            result = new RequestResult("Error in parameters", -1);
-            logger.getLogger().log(Level.SEVERE, ex.getMessage());
-        }
-        return gson.toJson(result);
+            return result;
+        });
     }
 
     /**
@@ -394,6 +306,7 @@ public class AlertsService {
      *
      * @param alert to add
      * @param token secure the method for logged in user
+     * @param async suspended response, resumed with the result
      * @return Json with message and result code. Code: 1 OK,
      * -1 Parameter error, -10 invalid token, -11 expired token, -12
      * Error assigning token.
@@ -402,45 +315,137 @@ public class AlertsService {
     @Path("/add")
     @Produces(MediaType.APPLICATION_JSON)
     @Consumes(MediaType.APPLICATION_FORM_URLENCODED)
-    public String addAlert(@FormParam("alert") String alert, @FormParam("token") String token) {
-        RequestResult result;
-        int option;
-        try {
-            Alert newAlert = new Gson().fromJson(alert, Alert.class);
-            String tokenToCheck = new Gson().fromJson(token, String.class);
-            if (tokenToCheck != null) {
-                option = securePost(tokenToCheck);
-                switch (option) {
-                    case 1: //token ok
-                        if (newAlert != null) {
-                            int code = model.addAlert(newAlert);
-                            if (code == 1) {
-                                result = new RequestResult("Alert added successfully", 1);
+    public void addAlert(@FormParam("alert") String alert, @FormParam("token") String token,
+            @Suspended final AsyncResponse async) {
+        AsyncRequests.update(async, () -> {
+            RequestResult result;
+            int option;
+            try {
+                Alert newAlert = GsonProvider.parser().fromJson(alert, Alert.class);
+                String tokenToCheck = GsonProvider.parser().fromJson(token, String.class);
+                if (tokenToCheck != null) {
+                    option = securePost(tokenToCheck);
+                    switch (option) {
+                        case 1: //token ok
+                            if (newAlert != null) {
+                                int code = model.addAlert(newAlert);
+                                if (code == 1) {
+                                    result = new RequestResult("Alert added successfully", 1);
+                                } else {
+                                    result = new RequestResult("Error adding alerts", -1);
+                                }
                             } else {
-                                result = new RequestResult("Error adding alerts", -1);
+                                throw new JsonSyntaxException("Error in parameters");
                             }
-                        } else {
-                            throw new JsonSyntaxException("Error in parameters");
-                        }
-                        break;
-                    case 0: //token expired
-                        result = new RequestResult("Expired token", -11);
-                        break;
-                    case -10: //not valid token
-                        result = new RequestResult("Invalid token", -10);
-                        break;
-                    default: //error assigning token
-                        result = new RequestResult("Error assigning token", -12);
-                        break;
+                            break;
+                        case 0: //token expired
+                            result = new RequestResult("Expired token", -11);
+                            break;
+                        case -10: //not valid token
+                            result = new RequestResult("Invalid token", -10);
+                            break;
+                        default: //error assigning token
+                            result = new RequestResult("Error assigning token", -12);
+                            break;
+                    }
+                } else {
+                    result = new RequestResult("Error in token parameters", -1);
                 }
-            } else {
-                result = new RequestResult("Error in token parameters", -1);
+            } catch (IllegalArgumentException | IllegalStateException | JsonSyntaxException ex) {
+                result = new RequestResult(ex.getMessage(), -1);
+                logger.getLogger().log(Level.SEVERE, ex.getMessage());
             }
-        } catch (IllegalArgumentException | IllegalStateException | JsonSyntaxException ex) {
-            result = new RequestResult(ex.getMessage(), -1);
-            logger.getLogger().log(Level.SEVERE, ex.getMessage());
+            return result;
+        });
+    }
+
+    /**
+     * Add a list of alerts, for shelters and partner apps. The Json array is
+     * read item by item from the request body and saved in chunks, each chunk
+     * in one transaction with JDBC batches, so only one chunk is in memory.
+     * The alerts belong to the user of the token.
+     *
+     * @param body Json array of alerts
+     * @param token secure the method for logged in user
+     * @param chunk alerts per transaction, 100 by default
+     * @param async suspended response, resumed with the result
+     * @return Json with the result of each alert and result code. Code: 1 OK,
+     * 0 Some alerts were not added, -1 Parameter error (alerts before the
+     * error may be added, see the items), -10 invalid token, -11 expired
+     * token, -12 Error assigning token.
+     */
+    @POST
+    @Path("/batch")
+    @Produces(MediaType.APPLICATION_JSON)
+    @Consumes(MediaType.APPLICATION_JSON)
+    public void addAlerts(InputStream body, @HeaderParam("token") String token,
+            @QueryParam("chunk") String chunk, @Suspended final AsyncResponse async) {
+        AsyncRequests.update(async, () -> {
+            RequestResult result;
+            List<ItemResult> items = new ArrayList<>();
+            try {
+                int chunkSize = chunk != null ? Integer.parseInt(chunk) : BATCH_CHUNK;
+                if (token != null && chunkSize > 0 && chunkSize <= MAX_BATCH_CHUNK) {
+                    AuthToken auth = model.findToken(token);
+                    int option = auth != null ? validateToken(auth.getExpiration()) : -10;
+                    switch (option) {
+                        case 1: //token ok
+                            readAlerts(body, auth.getUserId(), chunkSize, items);
+                            result = new RequestResult(items, allAdded(items) ? 1 : 0);
+                            break;
+                        case 0: //token expired
+                            result = new RequestResult("Expired token", -11);
+                            break;
+                        case -10: //not valid token
+                            result = new RequestResult("Invalid token", -10);
+                            break;
+                        default: //error assigning token
+                            result = new RequestResult("Error assigning token", -12);
+                            break;
+                    }
+                } else {
+                    result = new RequestResult("Error in parameters", -1);
+                }
+            } catch (IOException | IllegalArgumentException | IllegalStateException | JsonParseException ex) {
+                result = new RequestResult(items, -1);
+                logger.getLogger().log(Level.SEVERE, ex.getMessage());
+            }
+            return result;
+        });
+    }
+
+    /**
+     * Reads a Json array of alerts and adds them in chunks.
+     *
+     * @param body Json array of alerts
+     * @param userId owner of the alerts
+     * @param chunkSize alerts per transaction
+     * @param items result of each alert read so far
+     */
+    private void readAlerts(InputStream body, int userId, int chunkSize, List<ItemResult> items)
+            throws IOException {
+        JsonReader reader = new JsonReader(new InputStreamReader(body, StandardCharsets.UTF_8));
+        List<Alert> alerts = new ArrayList<>(chunkSize);
+        reader.beginArray();
+        while (reader.hasNext()) {
+            alerts.add(GsonProvider.parser().<Alert>fromJson(reader, Alert.class));
+            if (alerts.size() == chunkSize) {
+                items.addAll(model.addAlerts(alerts, userId, items.size()));
+                alerts.clear();
+            }
+        }
+        reader.endArray();
+        if (!alerts.isEmpty()) {
+            items.addAll(model.addAlerts(alerts, userId, items.size()));
         }
-        return new Gson().toJson(result);
+    }
+
+    private boolean allAdded(List<ItemResult> items) {
+        boolean added = true;
+        for (ItemResult item : items) {
+            added &= item.getResultCode() == 1;
+        }
+        return added;
     }
 
     /**
@@ -448,6 +453,7 @@ public class AlertsService {
      *
      * @param alert to modify
      * @param token secure the method for logged in user
+     * @param async suspended response, resumed with the result
      * @return Json with message and result code. Code: 1 OK,
      * -1 error, -10 invalid token, -11 expired token, -12
      * Error assigning token.
@@ -456,46 +462,131 @@ public class AlertsService {
     @Path("/modify")
     @Produces(MediaType.APPLICATION_JSON)
     @Consumes(MediaType.APPLICATION_FORM_URLENCODED)
-    public String modifyAlert(@FormParam("alert") String alert, @FormParam("token") String token) {
-        RequestResult result;
-        int option;
-        try {
-            Alert update = new Gson().fromJson(alert, Alert.class);
-            String tokenToCheck = new Gson().fromJson(token, String.class);
-            if (tokenToCheck != null) {
-                option = securePost(tokenToCheck);
-                switch (option) {
-                    case 1: //token ok
-                        if (update != null) {
-                            int code = model.modifyAlert(update);
-                            if (code == 1) {
-                                result = new RequestResult("Alert modified successfully", 1);
+    public void modifyAlert(@FormParam("alert") String alert, @FormParam("token") String token,
+            @Suspended final AsyncResponse async) {
+        AsyncRequests.update(async, () -> {
+            RequestResult result;
+            int option;
+            try {
+                Alert update = GsonProvider.parser().fromJson(alert, Alert.class);
+                String tokenToCheck = GsonProvider.parser().fromJson(token, String.class);
+                if (tokenToCheck != null) {
+                    option = securePost(tokenToCheck);
+                    switch (option) {
+                        case 1: //token ok
+                            if (update != null) {
+                                int code = model.modifyAlert(update);
+                                if (code == 1) {
+                                    result = new RequestResult("Alert modified successfully", 1);
+                                } else {
+                                    result = new RequestResult("Error modifying alert", -1);
+                                }
                             } else {
-                                result = new RequestResult("Error modifying alert", -1);
+                                throw new JsonSyntaxException("Error in parameters");
                             }
-                        } else {
-                            throw new JsonSyntaxException("Error in parameters");
-                        }
-                        break;
-                    case 0: //token expired
-                        result = new RequestResult("Expired token", -11);
-                        break;
-                    case -10: //not valid token
-                        result = new RequestResult("Invalid token", -10);
-                        break;
-                    default: //error assigning token
-                        result = new RequestResult("Error assigning token", -12);
-                        break;
+                            break;
+                        case 0: //token expired
+                            result = new RequestResult("Expired token", -11);
+                            break;
+                        case -10: //not valid token
+                            result = new RequestResult("Invalid token", -10);
+                            break;
+                        default: //error assigning token
+                            result = new RequestResult("Error assigning token", -12);
+                            break;
+                    }
+                } else {
+                    result = new RequestResult("Error in token parameters", -1);
                 }
-            } else {
-                result = new RequestResult("Error in token parameters", -1);
+            } catch (IllegalArgumentException | IllegalStateException | JsonSyntaxException ex) {
+                result = new RequestResult("Error in parameters", -1);
+                logger.getLogger().log(Level.SEVERE, ex.getMessage());
             }
-        } catch (IllegalArgumentException | IllegalStateException | JsonSyntaxException ex) {
-            result = new RequestResult("Error in parameters", -1);
-            logger.getLogger().log(Level.SEVERE, ex.getMessage());
-        }
 
-        return new Gson().toJson(result);
+            return result;
+        });
+    }
+
+    /**
+     * Change some fields of an alert. Only the fields sent are changed, with
+     * a single UPDATE of the tables that have changes.
+     *
+     * @param id alert id
+     * @param patch Json object with the fields to change: creationDate,
+     * active, animal fields (chipNum, name, kind, hairColor, race, halfBlood,
+     * age, sex), description fields (title, lostDayHour, description, phone),
+     * latitude and longitude
+     * @param token secure the method for the owner of the alert
+     * @param async suspended response, resumed with the result
+     * @return Json with message and result code. Code: 1 OK, 0 Nothing to
+     * change, -1 Parameter error, -2 Alert not found, -3 Not the owner of the
+     * alert, -10 invalid token, -11 expired token, -12 Error assigning token.
+     */
+    @PATCH
+    @Path("/{id}")
+    @Produces(MediaType.APPLICATION_JSON)
+    @Consumes(MediaType.APPLICATION_JSON)
+    public void patchAlert(@PathParam("id") String id, String patch,
+            @HeaderParam("token") String token, @Suspended final AsyncResponse async) {
+        AsyncRequests.update(async, () -> {
+            RequestResult result;
+            int option;
+            try {
+                int alertId = Integer.parseInt(id);
+                AlertPatch changes = GsonProvider.parser().fromJson(patch, AlertPatch.class);
+                if (token != null) {
+                    AuthToken auth = model.findToken(token);
+                    option = auth != null ? validateToken(auth.getExpiration()) : -10;
+                    switch (option) {
+                        case 1: //token ok
+                            Alert alert = model.findAlertById(alertId);
+                            if (changes == null) {
+                                throw new JsonSyntaxException("Error in parameters");
+                            } else if (alert == null) {
+                                result = new RequestResult("Alert not found", -2);
+                            } else if (alert.getUserId() == null
+                                    || !alert.getUserId().getId().equals(auth.getUserId())) {
+                                result = new RequestResult("Not the owner of the alert", -3);
+                            } else {
+                                int code = model.patchAlert(alertId, changes);
+                                switch (code) {
+                                    case 1:
+                                        result = new RequestResult("Alert modified successfully", 1);
+                                        break;
+                                    case 0:
+                                        result = new RequestResult("Nothing to change", 0);
+                                        break;
+                                    case -2:
+                                        result = new RequestResult("Alert not found", -2);
+                                        break;
+                                    case -3:
+                                        result = new RequestResult("Error in parameters", -1);
+                                        break;
+                                    default:
+                                        result = new RequestResult("Error modifying alert", -1);
+                                        break;
+                                }
+                            }
+                            break;
+                        case 0: //token expired
+                            result = new RequestResult("Expired token", -11);
+                            break;
+                        case -10: //not valid token
+                            result = new RequestResult("Invalid token", -10);
+                            break;
+                        default: //error assigning token
+                            result = new RequestResult("Error assigning token", -12);
+                            break;
+                    }
+                } else {
+                    result = new RequestResult("Error in token parameters", -1);
+                }
+            } catch (IllegalArgumentException | IllegalStateException | JsonSyntaxException ex) {
+                result = new RequestResult("Error in parameters", -1);
+                logger.getLogger().log(Level.SEVERE, ex.getMessage());
+            }
+            return result;
+        });
     }
 
     /**
@@ -503,6 +594,7 @@ public class AlertsService {
      *
      * @param id alert id
      * @param token secure the method for logged in user
+     * @param async suspended response, resumed with the result
      * @return Json with message and result code. Code: 1 OK,
      * -1 Parameter error, -10 invalid token, -11 expired token, -12
      * Error assigning token.
@@ -511,46 +603,49 @@ public class AlertsService {
     @Path("/finish")
     @Produces(MediaType.APPLICATION_JSON)
     @Consumes(MediaType.APPLICATION_FORM_URLENCODED)
-    public String finishAlert(@FormParam("id") String id, @FormParam("token") String token) {
-        RequestResult result;
-        int option;
-        try {
-            int alertId = new Gson().fromJson(id, Integer.class);
-            Alert alert = model.findAlertById(alertId);
-            String tokenToCheck = new Gson().fromJson(token, String.class);
-            if (tokenToCheck != null) {
-                option = securePost(tokenToCheck);
-                switch (option) {
-                    case 1: //token ok
-                        if (alert != null) {
-                            int code = model.finishAlert(alert);
-                            if (code == 1) {
-                                result = new RequestResult("Alert finished", 1);
+    public void finishAlert(@FormParam("id") String id, @FormParam("token") String token,
+            @Suspended final AsyncResponse async) {
+        AsyncRequests.update(async, () -> {
+            RequestResult result;
+            int option;
+            try {
+                int alertId = GsonProvider.parser().fromJson(id, Integer.class);
+                Alert alert = model.findAlertById(alertId);
+                String tokenToCheck = GsonProvider.parser().fromJson(token, String.class);
+                if (tokenToCheck != null) {
+                    option = securePost(tokenToCheck);
+                    switch (option) {
+                        case 1: //token ok
+                            if (alert != null) {
+                                int code = model.finishAlert(alert);
+                                if (code == 1) {
+                                    result = new RequestResult("Alert finished", 1);
+                                } else {
+                                    result = new RequestResult("Error ending alert", -1);
+                                }
                             } else {
-                                result = new RequestResult("Error ending alert", -1);
+                                result = new RequestResult("Alert not found", -1);
                             }
-                        } else {
-                            result = new RequestResult("Alert not found", -1);
-                        }
-                        break;
-                    case 0: //token expired
-                        result = new RequestResult("Expired token", -11);
-                        break;
-                    case -10: //token not valid
-                        result = new RequestResult("Invalid token", -10);
-                        break;
-                    default: //error when assigning token
-                        result = new RequestResult("Error assigning token", -12);
-                        break;
+                            break;
+                        case 0: //token expired
+                            result = new RequestResult("Expired token", -11);
+                            break;
+                        case -10: //token not valid
+                            result = new RequestResult("Invalid token", -10);
+                            break;
+                        default: //error when assigning token
+                            result = new RequestResult("Error assigning token", -12);
+                            break;
+                    }
+                } else {
+                    result = new RequestResult("Error in token parameters", -1);
                 }
-            } else {
-                result = new RequestResult("Error in token parameters", -1);
+            } catch (IllegalArgumentException | IllegalStateException | JsonSyntaxException ex) {
+                result = new RequestResult("Error in parameters", -1);
+                logger.getLogger().log(Level.SEVERE, ex.getMessage());
             }
-        } catch (IllegalArgumentException | IllegalStateException | JsonSyntaxException ex) {
-            result = new RequestResult("Error in parameters", -1);
-            logger.getLogger().log(Level.SEVERE, ex.getMessage());
-        }
-        return new Gson().toJson(result);
+            return result;
+        });
     }
 
     /**
@@ -558,54 +653,117 @@ public class AlertsService {
      *
      * @param id alert id
      * @param token secure the method for logged in user
-     * @return Json with message and result code. Code: 1 OK,
-     * -1 Parameter error, -10 invalid token, -11 expired token, -12
-     * Error assigning token.
+     * @param async suspended response, resumed with the result
+     * @return Json with message and result code. Code: 1 OK, 0 Already
+     * reported by the user, -1 Parameter error, -10 invalid token, -11
+     * expired token, -12 Error assigning token.
      */
     @POST
     @Path("/report")
     @Produces(MediaType.APPLICATION_JSON)
     @Consumes(MediaType.APPLICATION_FORM_URLENCODED)
-    public String reportAlert(@FormParam("id") String id, @FormParam("token") String token) {
-        RequestResult result;
-        int option;
-        try {
-            int alertId = new Gson().fromJson(id, Integer.class);
-            Alert alert = model.findAlertById(alertId);
-            String tokenToCheck = new Gson().fromJson(token, String.class);
-            if (tokenToCheck != null) {
-                option = securePost(tokenToCheck);
-                switch (option) {
-                    case 1: //token ok
-                        if (alert != null) {
-                            int code = model.reportAlert(alert);
-                            if (code == 1) {
-                                result = new RequestResult("Alert reported succesfully!", 1);
-                            } else {
-                                result = new RequestResult("Error reporting alert", -1);
+    public void reportAlert(@FormParam("id") String id, @FormParam("token") String token,
+            @Suspended final AsyncResponse async) {
+        AsyncRequests.update(async, () -> {
+            RequestResult result;
+            int option;
+            try {
+                int alertId = GsonProvider.parser().fromJson(id, Integer.class);
+                String tokenToCheck = GsonProvider.parser().fromJson(token, String.class);
+                if (tokenToCheck != null) {
+                    AuthToken auth = model.findToken(tokenToCheck);
+                    option = auth != null ? validateToken(auth.getExpiration()) : -10;
+                    switch (option) {
+                        case 1: //token ok
+                            int code = model.reportAlert(alertId, auth.getUserId());
+                            switch (code) {
+                                case 1:
+                                    result = new RequestResult("Alert reported succesfully!", 1);
+                                    break;
+                                case 0:
+                                    result = new RequestResult("Alert already reported", 0);
+                                    break;
+                                case -2:
+                                    result = new RequestResult("Alert not found", -1);
+                                    break;
+                                default:
+                                    result = new RequestResult("Error reporting alert", -1);
+                                    break;
                             }
-                        } else {
-                            result = new RequestResult("Alert not found", -1);
-                        }
-                        break;
-                    case 0: //token expired
-                        result = new RequestResult("Expired token", -11);
-                        break;
-                    case -10: //token not valid
-                        result = new RequestResult("Invalid token", -10);
-                        break;
-                    default: //error when assigning token
-                        result = new RequestResult("Error assigning token", -12);
-                        break;
+                            break;
+                        case 0: //token expired
+                            result = new RequestResult("Expired token", -11);
+                            break;
+                        case -10: //token not valid
+                            result = new RequestResult("Invalid token", -10);
+                            break;
+                        default: //error when assigning token
+                            result = new RequestResult("Error assigning token", -12);
+                            break;
+                    }
+                } else {
+                    result = new RequestResult("Error in token parameters", -1);
+                }
+            } catch (IllegalArgumentException | IllegalStateException | JsonSyntaxException ex) {
+                result = new RequestResult("Error in parameters", -1);
+                logger.getLogger().log(Level.SEVERE, ex.getMessage());
+            }
+            return result;
+        });
+    }
+
+    /**
+     * Builds the result of a page of alerts.
+     *
+     * @param alerts page of alerts
+     * @return result with the alerts and the id of the last one as cursor if
+     * the page is full. Code: 1 OK, 0 No results, -1 Error
+     */
+    private RequestResult pageResult(List<Alert> alerts) {
+        RequestResult result;
+        if (alerts != null) {
+            if (!alerts.isEmpty()) {
+                String next = null;
+                if (alerts.size() == PAGE_SIZE) {
+                    next = String.valueOf(alerts.get(alerts.size() - 1).getId());
                 }
+                result = new RequestResult(alerts, 1, next);
             } else {
-                result = new RequestResult("Error in token parameters", -1);
+                result = new RequestResult("No results", 0);
             }
-        } catch (IllegalArgumentException | IllegalStateException | JsonSyntaxException ex) {
-            result = new RequestResult("Error in parameters", -1);
-            logger.getLogger().log(Level.SEVERE, ex.getMessage());
+        } else {
+            result = new RequestResult("Database error", -1);
+        }
+        return result;
+    }
+
+    /**
+     * Reads the list position of a page request.
+     *
+     * @param number position of the first alert of the page
+     * @return position
+     * @throws NumberFormatException if it is not a number or it is negative
+     */
+    private int parsePosition(String number) {
+        int n = Integer.parseInt(number);
+        if (n < 0) {
+            throw new NumberFormatException("Position must not be negative: " + number);
         }
-        return new Gson().toJson(result);
+        return n;
+    }
+
+    /**
+     * Reads the continuation cursor of a page request.
+     *
+     * @param cursor id of the last alert of the previous page
+     * @return alert id or null if there is no cursor
+     */
+    private Integer parseCursor(String cursor) {
+        Integer after = null;
+        if (cursor != null && !cursor.isEmpty()) {
+            after = Integer.parseInt(cursor);
+        }
+        return after;
     }
 
     /**
@@ -617,13 +775,9 @@ public class AlertsService {
      */
     private int securePost(String token) {
         int code;
-        User user = model.findUserByToken(token);
-        if (user != null) {
-            if (user.getToken().equals(token)) {
-                code = validateToken(user);
-            } else {
-                code = -10;
-            }
+        AuthToken auth = model.findToken(token);
+        if (auth != null) {
+            code = validateToken(auth.getExpiration());
         } else {
             code = -10;
         }
@@ -631,24 +785,15 @@ public class AlertsService {
     }
 
     /**
-     * Checks if token is alive or expired, if the token is correct it will be
-     * renewed.
+     * Checks if token is alive or expired.
      *
-     * @param user to check
-     * @return 1 OK, -1 error assigning token, 0 token expired.
+     * @param expiration last registered date of the user token
+     * @return 1 OK, 0 token expired.
      */
-    private int validateToken(User user) {
+    private int validateToken(Date expiration) {
         int result;
-        Date userDate = user.getExpiration();
-        Timestamp userTime = new Timestamp(userDate.getTime());
         //adds 24 hours to the last registered date of the user
-        Instant instant = userTime.toInstant().plusSeconds(sec);
-        userTime = userTime.from(instant);
-        //current server time        
-        Date d = new Date();
-        Timestamp ts = new Timestamp(d.getTime());
-        //check expiration session
-        if (!userTime.before(ts)) { //User's last registered date + 24 hours are before the current time
+        if (expiration != null && expiration.getTime() + sec * 1000L >= System.currentTimeMillis()) {
             result = 1;
         } else {
             //password is nedded
@@ -0,0 +1,122 @@
+package cat.proven.petAlert.restful.services;
+
+import cat.proven.petAlert.logger.ServerLogger;
+import cat.proven.petAlert.model.Model;
+import cat.proven.petAlert.model.image.Image;
+import cat.proven.petAlert.model.image.Rendition;
+import cat.proven.petAlert.restful.AsyncRequests;
+import cat.proven.petAlert.restful.RequestResult;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.logging.Level;
+import javax.servlet.ServletContext;
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.PathParam;
+import javax.ws.rs.QueryParam;
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.container.Suspended;
+import javax.ws.rs.core.CacheControl;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.EntityTag;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Request;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
+
+/**
+ * REST Web Service for animals.
+ *
+ * @author Pet Alert
+ */
+@Path("/animals")
+public class AnimalsService {
+
+    private Model model;
+    private ServerLogger logger;
+    private final int imageAge = 3600 * 24; //24 hours in client caches
+
+    /**
+     * Constructor. It gets a reference to the Model and ServerLogger of the
+     * application context, created by ModelListener.
+     *
+     * @param context the application context
+     */
+    public AnimalsService(@Context ServletContext context) {
+        logger = (ServerLogger) context.getAttribute("logger");
+        model = (Model) context.getAttribute("model");
+    }
+
+    /**
+     * Show the image of an animal.
+     *
+     * @param id animal id
+     * @param size thumbnail, medium or original (default)
+     * @param request to check the ETag sent by the client
+     * @param async suspended response, resumed with the result
+     * @return image bytes, 304 if the client copy is up to date or Json with
+     * result code if there is no image. Code: 0 No image, -1 Error
+     */
+    @GET
+    @Path("/{id}/image")
+    public void showAnimalImage(@PathParam("id") String id, @QueryParam("size") String size,
+            @Context Request request, @Suspended final AsyncResponse async) {
+        AsyncRequests.resume(async, () -> {
+            Response response;
+            try {
+                final Image image = model.findAnimalImage(Integer.parseInt(id), Rendition.fromParam(size));
+                if (image != null) {
+                    EntityTag tag = new EntityTag(image.getHash());
+                    CacheControl cache = new CacheControl();
+                    cache.setMaxAge(imageAge);
+                    Response.ResponseBuilder builder = request.evaluatePreconditions(tag);
+                    if (builder == null) { //client copy is not up to date
+                        StreamingOutput body = new StreamingOutput() {
+                            @Override
+                            public void write(OutputStream out) throws IOException {
+                                image.writeTo(out);
+                            }
+                        };
+                        builder = Response.ok(body, imageType(image.getHeader(12)));
+                    }
+                    response = builder.tag(tag).cacheControl(cache).build();
+                } else {
+                    response = Response.status(Response.Status.NOT_FOUND)
+                            .entity(new RequestResult("Image not found", 0))
+                            .type(MediaType.APPLICATION_JSON).build();
+                }
+            } catch (IllegalArgumentException ex) { //includes NumberFormatException
+                response = Response.status(Response.Status.BAD_REQUEST)
+                        .entity(new RequestResult("Error in parameters", -1))
+                        .type(MediaType.APPLICATION_JSON).build();
+                logger.getLogger().log(Level.SEVERE, ex.getMessage());
+            }
+            return response;
+        });
+    }
+
+    /**
+     * Guess the image type from its first bytes.
+     *
+     * @param image first bytes of the image
+     * @return image media type
+     */
+    private String imageType(byte[] image) {
+        String type;
+        if (image.length > 3 && (image[0] & 0xFF) == 0xFF && (image[1] & 0xFF) == 0xD8) {
+            type = "image/jpeg";
+        } else if (image.length > 8 && (image[0] & 0xFF) == 0x89 && image[1] == 'P'
+                && image[2] == 'N' && image[3] == 'G') {
+            type = "image/png";
+        } else if (image.length > 6 && image[0] == 'G' && image[1] == 'I' && image[2] == 'F') {
+            type = "image/gif";
+        } else if (image.length >= 12 && image[0] == 'R' && image[1] == 'I' && image[2] == 'F'
+                && image[3] == 'F' && image[8] == 'W' && image[9] == 'E' && image[10] == 'B') {
+            type = "image/webp";
+        } else {
+            type = MediaType.APPLICATION_OCTET_STREAM;
+        }
+        return type;
+    }
+
+}
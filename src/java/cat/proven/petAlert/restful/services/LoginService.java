@@ -4,8 +4,8 @@ import cat.proven.petAlert.logger.ServerLogger;
 import cat.proven.petAlert.model.Model;
 import cat.proven.petAlert.model.User;
 import cat.proven.petAlert.model.token.AuthToken;
+import cat.proven.petAlert.restful.AsyncRequests;
 import cat.proven.petAlert.restful.RequestResult;
-import com.google.gson.Gson;
 import java.sql.Timestamp;
 import java.time.Instant;
 import java.util.Date;
@@ -18,6 +18,8 @@ import javax.ws.rs.GET;
 import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.container.Suspended;
 import javax.ws.rs.core.MediaType;
 
 /**
@@ -38,44 +40,41 @@ public class LoginService {
      * @param context
      */
     public LoginService(@Context ServletContext context) {
-        if (context.getAttribute("model") != null) {
-            logger = (ServerLogger) context.getAttribute("logger");
-            model = (Model) context.getAttribute("model");
-        } else {
-            logger = new ServerLogger();
-            model = new Model(logger);
-            context.setAttribute("logger", logger);
-            context.setAttribute("model", model);
-        }
+        logger = (ServerLogger) context.getAttribute("logger");
+        model = (Model) context.getAttribute("model");
     }
 
     /**
      * Retrieves all tokens.
      *
+     * @param async suspended response, resumed with the result
      * @return Json with list of tokens and result code. Code: 1 OK, 0 No
      * results, -1 Error
      */
     @GET
     @Path("/")
-    public String getTokens() {
-        List<String> list;
-        RequestResult result;
-        try {
-            list = model.findAllTokens();
-            if (list != null) {
-                if (!list.isEmpty()) {
-                    result = new RequestResult(list, 1);
+    @Produces(MediaType.APPLICATION_JSON)
+    public void getTokens(@Suspended final AsyncResponse async) {
+        AsyncRequests.resume(async, () -> {
+            List<String> list;
+            RequestResult result;
+            try {
+                list = model.findAllTokens();
+                if (list != null) {
+                    if (!list.isEmpty()) {
+                        result = new RequestResult(list, 1);
+                    } else {
+                        result = new RequestResult("No results", 0);
+                    }
                 } else {
-                    result = new RequestResult("No results", 0);
+                    result = new RequestResult("Error", -1);
                 }
-            } else {
+            } catch (IllegalStateException ex) {
                 result = new RequestResult("Error", -1);
+                logger.getLogger().log(Level.SEVERE, ex.getMessage());
             }
-        } catch (IllegalStateException ex) {
-            result = new RequestResult("Error", -1);
-            logger.getLogger().log(Level.SEVERE, ex.getMessage());
-        }
-        return new Gson().toJson(result);
+            return result;
+        });
     }
 
     /**
@@ -83,6 +82,7 @@ public class LoginService {
      *
      * @param username username
      * @param password password
+     * @param async suspended response, resumed with the result
      * @return Json with token and result code. Code: 1 OK, -1 error assigning
      * token, -2 user doenst exist, -3 password does not match, -5 login fail.
      */
@@ -90,24 +90,36 @@ public class LoginService {
     @Path("/login/{username}/{password}")
     @Produces(MediaType.APPLICATION_JSON)
     @Consumes(MediaType.APPLICATION_FORM_URLENCODED)
-    public String login(@PathParam("username") String username,
-            @PathParam("password") String password) {
-        //validate user credentials
-        int code;
-        RequestResult result;
-        try {
-            User user = model.findUserByUsername(username);
-            //user exist
-            if (user != null) {
-                //check password
-                boolean valid = user.getPassword().equals(password);               
-                if (valid) {
-                    if (user.getToken() != null) { //have token                                                            
-                        code = validateToken(user, 1); //check expiration
-                        if (code == 1) {
-                            result = new RequestResult(user.getToken(), 1);
-                        } else {
-                            code = generateToken(user); //generate token
+    public void login(@PathParam("username") String username,
+            @PathParam("password") String password, @Suspended final AsyncResponse async) {
+        AsyncRequests.update(async, () -> {
+            //validate user credentials
+            int code;
+            RequestResult result;
+            try {
+                User user = model.findUserByUsername(username);
+                //user exist
+                if (user != null) {
+                    //check password
+                    boolean valid = user.getPassword().equals(password);               
+                    if (valid) {
+                        if (user.getToken() != null) { //have token                                                            
+                            code = validateToken(user, 1); //check expiration
+                            if (code == 1) {
+                                result = new RequestResult(user.getToken(), 1);
+                            } else {
+                                code = generateToken(user); //generate token
+                                switch (code) {
+                                    case 1:
+                                        result = new RequestResult(user.getToken(), 1);
+                                        break;
+                                    default:
+                                        result = new RequestResult("Error assigning token", -1);
+                                        break;
+                                }
+                            }
+                        } else { //user dont have token                                                
+                            code = generateToken(user); //generate authorization token
                             switch (code) {
                                 case 1:
                                     result = new RequestResult(user.getToken(), 1);
@@ -117,69 +129,63 @@ public class LoginService {
                                     break;
                             }
                         }
-                    } else { //user dont have token                                                
-                        code = generateToken(user); //generate authorization token
-                        switch (code) {
-                            case 1:
-                                result = new RequestResult(user.getToken(), 1);
-                                break;
-                            default:
-                                result = new RequestResult("Error assigning token", -1);
-                                break;
-                        }
+                    } else {
+                        //incorrect password
+                        result = new RequestResult("Password does not match", -3);
                     }
                 } else {
-                    //incorrect password
-                    result = new RequestResult("Password does not match", -3);
+                    //user doesn't exist
+                    result = new RequestResult("User doenst exist", -2);
                 }
-            } else {
-                //user doesn't exist
-                result = new RequestResult("User doenst exist", -2);
+            } catch (IllegalStateException ex) {
+                result = new RequestResult("Server error", -5);
+                logger.getLogger().log(Level.SEVERE, ex.getMessage());
             }
-        } catch (IllegalStateException ex) {
-            result = new RequestResult("Server error", -5);
-            logger.getLogger().log(Level.SEVERE, ex.getMessage());
-        }
-        return new Gson().toJson(result);
+            return result;
+        });
     }
 
     /**
      * Login with user token
      *
      * @param token to search
+     * @param async suspended response, resumed with the result
      * @return Json with token and result code. Code: 1 OK, 0 password required,
      * -1 no match token, -2 user dont have token, -5 login fail.
      */
     @GET
     @Path("/loginToken/{token}")
-    public String loginToken(@PathParam("token") String token) {
-        RequestResult result;       
-        int code;
-        try {
-            User user = model.findUserByToken(token);
-            if (user != null) {
-                if (user.getToken() != null) {
-                    //validate token
-                    code = validateToken(user, 2);
-                    if (code == 1) {
-                        result = new RequestResult(user.getToken(), 1);                       
+    @Produces(MediaType.APPLICATION_JSON)
+    public void loginToken(@PathParam("token") String token, @Suspended final AsyncResponse async) {
+        AsyncRequests.update(async, () -> {
+            RequestResult result;       
+            int code;
+            try {
+                User user = model.findUserByToken(token);
+                if (user != null) {
+                    if (user.getToken() != null) {
+                        //validate token
+                        code = validateToken(user, 2);
+                        if (code == 1) {
+                            result = new RequestResult(user.getToken(), 1);                       
+                        } else {
+                            //password required              
+                            result = new RequestResult("Password required", 0);
+                        }
                     } else {
-                        //password required              
-                        result = new RequestResult("Password required", 0);
+                        //user doesn't exist
+                        result = new RequestResult("User dont have token", -2);
                     }
                 } else {
-                    //user doesn't exist
-                    result = new RequestResult("User dont have token", -2);
+                    result = new RequestResult("No user with this token", -1);
                 }
-            } else {
-                result = new RequestResult("No user with this token", -1);
+            } catch (IllegalStateException ex) {
+                result = new RequestResult("Login fail", -5);
+                logger.getLogger().log(Level.SEVERE, ex.getMessage());
             }
-        } catch (IllegalStateException ex) {
-            result = new RequestResult("Login fail", -5);
-            logger.getLogger().log(Level.SEVERE, ex.getMessage());
-        }
 
-        return new Gson().toJson(result);
+            return result;
+        });
     }
 
     /**
@@ -229,31 +235,35 @@ public class LoginService {
      * Removes user token
      *
      * @param token to destroy
+     * @param async suspended response, resumed with the result
      * @return 1 if successfully removed, -2 token not found, -1 otherwise.
      */
     @GET
     @Path("/logout/{token}")
+    @Produces(MediaType.APPLICATION_JSON)
     @Consumes(MediaType.APPLICATION_FORM_URLENCODED)
-    public String logout(@PathParam("token") String token) {
-        RequestResult result;
-        User user;
-        try {
-            user = model.findUserByToken(token);
-            if (user != null) {
-                int code = model.removeToken(user);
-                if (code == 1) {
-                    result = new RequestResult("Token removed succesfully", 1);
+    public void logout(@PathParam("token") String token, @Suspended final AsyncResponse async) {
+        AsyncRequests.update(async, () -> {
+            RequestResult result;
+            User user;
+            try {
+                user = model.findUserByToken(token);
+                if (user != null) {
+                    int code = model.removeToken(user);
+                    if (code == 1) {
+                        result = new RequestResult("Token removed succesfully", 1);
+                    } else {
+                        result = new RequestResult("Error removing token", -1);
+                    }
                 } else {
-                    result = new RequestResult("Error removing token", -1);
+                    result = new RequestResult("Token not found", -2);
                 }
-            } else {
-                result = new RequestResult("Token not found", -2);
+            } catch (IllegalStateException ex) {
+                result = new RequestResult("Error logout", -1);
+                logger.getLogger().log(Level.SEVERE, ex.getMessage());
             }
-        } catch (IllegalStateException ex) {
-            result = new RequestResult("Error logout", -1);
-            logger.getLogger().log(Level.SEVERE, ex.getMessage());
-        }
-        return new Gson().toJson(result);
+            return result;
+        });
     }
 
     /**
@@ -0,0 +1,88 @@
+package cat.proven.petAlert.restful.services;
+
+import cat.proven.petAlert.logger.ServerLogger;
+import cat.proven.petAlert.model.CacheStatistics;
+import cat.proven.petAlert.model.Model;
+import cat.proven.petAlert.model.persist.PoolStatistics;
+import cat.proven.petAlert.restful.RequestResult;
+import java.util.List;
+import java.util.logging.Level;
+import javax.servlet.ServletContext;
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.MediaType;
+
+/**
+ * REST Web Service for server statistics.
+ *
+ * @author Pet Alert
+ */
+@Path("/stats")
+public class StatsService {
+
+    private Model model;
+    private ServerLogger logger;
+
+    /**
+     * Constructor. It gets a reference to the Model and ServerLogger of the
+     * application context, created by ModelListener.
+     *
+     * @param context the application context
+     */
+    public StatsService(@Context ServletContext context) {
+        logger = (ServerLogger) context.getAttribute("logger");
+        model = (Model) context.getAttribute("model");
+    }
+
+    /**
+     * Show database connection pool statistics.
+     *
+     * @return Json with pool statistics and result code. Code: 1 OK, -1 Error
+     */
+    @GET
+    @Path("/pool")
+    @Produces(MediaType.APPLICATION_JSON)
+    public RequestResult showPoolStatistics() {
+        PoolStatistics stats;
+        RequestResult result;
+        try {
+            stats = model.findPoolStatistics();
+            result = new RequestResult(stats, 1);
+        } catch (IllegalStateException ex) {
+            result = new RequestResult("Error", -1);
+            logger.getLogger().log(Level.SEVERE, ex.getMessage());
+        }
+        return result;
+    }
+
+    /**
+     * Show the statistics of the nearest alert pages cache.
+     *
+     * @return Json with hits, misses and cached pages and result code. Code: 1
+     * OK
+     */
+    @GET
+    @Path("/distances")
+    @Produces(MediaType.APPLICATION_JSON)
+    public RequestResult showDistanceCacheStatistics() {
+        CacheStatistics stats = model.findDistanceCacheStatistics();
+        return new RequestResult(stats, 1);
+    }
+
+    /**
+     * Show the statistics of the shared entity cache lookups.
+     *
+     * @return Json with hits and misses of alerts and users and result code.
+     * Code: 1 OK
+     */
+    @GET
+    @Path("/entities")
+    @Produces(MediaType.APPLICATION_JSON)
+    public RequestResult showEntityCacheStatistics() {
+        List<CacheStatistics> stats = model.findEntityCacheStatistics();
+        return new RequestResult(stats, 1);
+    }
+
+}